@@ -0,0 +1,71 @@
+package com.crow.locrowai.api.registration;
+
+import com.crow.locrowai.internal.backend.SecurityManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.*;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reading a signed extension manifest from disk and checking its signature. The manifest is signed with a
+ * throwaway key of the same size as the official one, so the benchmark does not depend on the shipped signatures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManifestBenchmark {
+
+    private static final String EXTENSION = "locrowai/extensions/audio/";
+
+    private Path dir;
+    private Path manifest;
+    private PublicKey key;
+
+    @Setup
+    public void setup() throws IOException, GeneralSecurityException {
+        dir = Files.createTempDirectory("locrowai-manifest");
+        manifest = dir.resolve("manifest.json");
+
+        byte[] bytes;
+        try (InputStream in = ManifestBenchmark.class.getClassLoader().getResourceAsStream(EXTENSION + "manifest.json")) {
+            if (in == null) throw new IOException("Missing resource " + EXTENSION + "manifest.json");
+            bytes = in.readAllBytes();
+        }
+        Files.write(manifest, bytes);
+
+        int bits = ((RSAPublicKey) SecurityManager.OFFICIAL_KEY).getModulus().bitLength();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(bits);
+        KeyPair pair = generator.generateKeyPair();
+        key = pair.getPublic();
+
+        Signature signature = Signature.getInstance("RSASSA-PSS");
+        signature.setParameter(new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, (bits + 7) / 8 - 32 - 2, 1));
+        signature.initSign(pair.getPrivate());
+        signature.update(bytes);
+        Files.writeString(dir.resolve("manifest.json.sig.b64"), Base64.getEncoder().encodeToString(signature.sign()));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public PackageManifest fetch() throws IOException {
+        return PackageManifest.fetch(manifest, key);
+    }
+}
@@ -0,0 +1,80 @@
+package com.crow.locrowai.api.runtime;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing scripts, which happens on the caller's thread (often the server thread) for every script.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScriptBuilderBenchmark {
+
+    // How many chat -> tts -> voice conversion rounds the script chains together.
+    @Param({"1", "8", "32"})
+    public int rounds;
+
+    private List<Map<String, String>> messages;
+    private ScriptTemplate template;
+
+    @Setup
+    public void setup() {
+        messages = List.of(
+                Map.of("role", "system", "content", "You are a villager. Answer in one or two short sentences."),
+                Map.of("role", "user", "content", "Where can I find iron around here?"),
+                Map.of("role", "assistant", "content", "Try the caves past the river, they go deep."),
+                Map.of("role", "user", "content", "Is it safe at night?")
+        );
+        template = builder(ScriptTemplate.slot("messages"), ScriptTemplate.slot("voice")).template();
+    }
+
+    @Benchmark
+    public Script build() {
+        return builder(messages, "am_puck").build();
+    }
+
+    @Benchmark
+    public Script bind() {
+        return template.bind(Map.of("messages", messages, "voice", "am_puck"));
+    }
+
+    private ScriptBuilder builder(Object messages, Object voice) {
+        ScriptBuilder builder = new ScriptBuilder()
+                .var("messages", messages)
+                .var("voice", voice);
+
+        for (int i = 0; i < rounds; i++) {
+            builder.then(new Call("chat" + i)
+                            .call("/llm/chat")
+                            .feed("temperature", 0.7)
+                            .feed("messages", "{{ vars.messages }}"))
+                    .then(new Call("tts" + i)
+                            .call("/tts")
+                            .feed("voice", "{{ vars.voice }}")
+                            .feed("speed", 1.1)
+                            .feed("text", "{{ ^content }}"))
+                    .then(new Call()
+                            .call("/rvc/infer")
+                            .feed("model", "villager")
+                            .feed("audio", "{{ ^audio }}"));
+        }
+
+        return builder
+                .returns("audio", "{{ ^audio }}")
+                .returns("transcript", "{{ tts0.timestamps }}");
+    }
+
+    @Benchmark
+    public void feed(Blackhole blackhole) {
+        blackhole.consume(new Call()
+                .call("/llm/chat")
+                .feed("temperature", 0.7)
+                .feed("max_tokens", 256)
+                .feed("messages", messages));
+    }
+}
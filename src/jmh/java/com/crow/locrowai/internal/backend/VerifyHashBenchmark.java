@@ -0,0 +1,48 @@
+package com.crow.locrowai.internal.backend;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking backend files against their manifest hashes, which runs over every file on each launch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VerifyHashBenchmark {
+
+    // A Python source file, a native library, and a model sized file.
+    @Param({"64", "16384", "262144"})
+    public int kilobytes;
+
+    private Path file;
+    private String hash;
+
+    @Setup
+    public void setup() throws IOException, NoSuchAlgorithmException {
+        byte[] bytes = new byte[kilobytes * 1024];
+        new Random(42).nextBytes(bytes);
+
+        file = Files.createTempFile("locrowai-verify", ".bin");
+        Files.write(file, bytes);
+        hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean verifyHash() throws IOException {
+        return SecurityManager.verifyHash(file, hash);
+    }
+}
@@ -0,0 +1,68 @@
+package com.crow.locrowai.internal.networking;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packing an offloaded script or result into chunks, and unpacking it on the other side.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkBenchmark {
+
+    // A short chat script, a result with a few seconds of audio, and one with a long clip.
+    @Param({"16384", "262144", "4194304"})
+    public int size;
+
+    private String payload;
+    private List<byte[]> chunks;
+
+    /**
+     * A results object like the backend returns: some text, timestamps and base64 encoded audio.
+     */
+    static String payload(int size) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"transcript\":[");
+
+        int words = 0;
+        while (json.length() < size / 4) {
+            if (words > 0) json.append(',');
+            json.append("{\"word\":\"villager").append(words % 97).append("\",\"start\":").append(words * 0.31)
+                    .append(",\"end\":").append(words * 0.31 + 0.27).append('}');
+            words++;
+        }
+
+        byte[] audio = new byte[Math.max(0, (size - json.length()) * 3 / 4)];
+        // Quiet speech: small samples compress somewhat, like real PCM.
+        for (int i = 0; i < audio.length; i++)
+            audio[i] = (byte) (random.nextGaussian() * 12);
+
+        return json.append("],\"audio\":\"").append(Base64.getEncoder().encodeToString(audio)).append("\"}").toString();
+    }
+
+    @Setup
+    public void setup() {
+        payload = payload(size);
+        chunks = ChunkSender.split(ChunkSender.compress(payload));
+    }
+
+    @Benchmark
+    public List<byte[]> compressAndSplit() {
+        return ChunkSender.split(ChunkSender.compress(payload));
+    }
+
+    @Benchmark
+    public byte[] reassembleAndUnpack() throws IOException {
+        Assembly asm = new Assembly(chunks.size());
+        for (int i = 0; i < chunks.size(); i++)
+            asm.add(chunks.size() - i, chunks.get(i));
+
+        return asm.unpack(Integer.MAX_VALUE);
+    }
+}
@@ -5,31 +5,76 @@ import com.crow.locrowai.api.registration.PackageManifest;
 import com.crow.locrowai.internal.LocrowAI;
 import com.crow.locrowai.api.registration.AIExtension;
 import com.crow.locrowai.api.registration.exceptions.*;
+import com.crow.locrowai.api.runtime.BackendStatus;
+import com.crow.locrowai.api.runtime.BinaryResults;
+import com.crow.locrowai.api.runtime.LazyResults;
 import com.crow.locrowai.api.runtime.Script;
+import com.crow.locrowai.api.runtime.ScriptEvent;
+import com.crow.locrowai.api.runtime.ScriptJson;
+import com.crow.locrowai.api.runtime.exceptions.AIBackendBusyException;
 import com.crow.locrowai.api.runtime.exceptions.AIBackendException;
+import com.crow.locrowai.api.runtime.exceptions.AIRuntimeException;
 import com.crow.locrowai.api.runtime.exceptions.MissingAIPackagesException;
+import com.crow.locrowai.api.runtime.exceptions.ScriptTimeoutException;
 import com.crow.locrowai.api.runtime.exceptions.UnauthorizedAICallException;
 import com.crow.locrowai.internal.Config;
+import com.crow.locrowai.internal.backend.BackendClient;
+import com.crow.locrowai.internal.backend.BinaryFrames;
+import com.crow.locrowai.internal.backend.BackendDispatcher;
+import com.crow.locrowai.internal.backend.BackendHealth;
 import com.crow.locrowai.internal.backend.InstallationManager;
+import com.crow.locrowai.internal.backend.JsonStreams;
 import com.crow.locrowai.internal.backend.SecurityManager;
-import com.crow.locrowai.internal.backend.LoadManager;
+import com.crow.locrowai.internal.backend.SharedMemory;
+import com.crow.locrowai.internal.metrics.Metrics;
 import com.crow.locrowai.internal.networking.ChunkSender;
+import com.crow.locrowai.internal.runtime.Cancellation;
+import com.crow.locrowai.internal.runtime.JobRegistry;
+import com.crow.locrowai.internal.runtime.ResultCache;
+import com.crow.locrowai.internal.runtime.SingleFlight;
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class AIContext {
 
     public record RegistrationResults(List<AIExtension> registered, List<String> declared, List<PackageManifest.ModelCard> modelCards) {}
 
+    /**
+     * A script registered with the local backend, so that each run only sends its vars. See {@link #prepare(Script)}.
+     */
+    public static final class PreparedScript {
+        private final Script script;
+        private CompletableFuture<String> handle;
+
+        private PreparedScript(Script script) {
+            this.script = script;
+        }
+
+        public Script getScript() {
+            return script;
+        }
+    }
+
+    private static final Gson gson = new Gson();
+
     private final Path LOCROW_AI_KEY = Path.of(LocrowAI.MODID, "official_key.pem");
 
     private final List<AIExtension> pendingRegistration = new ArrayList<>();
@@ -37,7 +82,14 @@ public class AIContext {
     private final List<String> declared = new ArrayList<>();
     private final List<PackageManifest.ModelCard> modelCards = new ArrayList<>();
     private boolean registrationComplete = false;
-    private final Map<UUID, CompletableFuture<JsonObject>> queue = new HashMap<>();
+    private final JobRegistry<CompletableFuture<InputStream>> queue = new JobRegistry<>(
+            () -> Duration.ofSeconds(Config.offloadExpiry),
+            () -> Config.offloadMaxOutstanding,
+            () -> 0L,
+            this::expire
+    );
+    private final ResultCache cache = new ResultCache();
+    private final SingleFlight<JsonObject> inflight = new SingleFlight<>(JsonObject::deepCopy);
     private final String MODID;
     private final ClassLoader loader;
 
@@ -108,68 +160,575 @@ public class AIContext {
         return !declared.contains(callID.split("/")[1]);
     }
 
+    /**
+     * Cancelling the returned future stops the script on the backend (or on the volunteer it was offloaded to),
+     * unless other callers are still waiting on an identical script.
+     */
     public CompletableFuture<JsonObject> execute(Script script) {
-        CompletableFuture<JsonObject> future = new CompletableFuture<>();
+        if (script.isCacheable()) {
+            JsonObject cached = cache.get(script.getBlueprintHash());
+            if (cached != null)
+                return CompletableFuture.completedFuture(cached);
+        }
+
+        // Identical scripts already in flight share one backend execution instead of each sending their own.
+        return inflight.execute(script.getBlueprintHash(), () -> {
+            if (!script.isCacheable()) return dispatch(script, "/run", JsonStreams::readObject);
+
+            // Cached results are sized by what the backend sent for them.
+            return dispatch(script, "/run", stream -> {
+                long[] size = {0};
+                JsonObject results = JsonStreams.readObject(JsonStreams.counting(stream, read -> size[0] += read));
+                cache.put(script.getBlueprintHash(), results, size[0], script.getCacheTtl());
+                return results;
+            });
+        });
+    }
+
+    /**
+     * Registers the script with the local backend once, so that {@link #execute(PreparedScript, Map)} only sends
+     * the vars for each run, like a prepared statement. The backend may forget prepared scripts, for example when
+     * it restarts, and they are then prepared again on their next run. While offloading, every run sends the
+     * whole script instead.
+     */
+    public PreparedScript prepare(Script script) {
+        PreparedScript prepared = new PreparedScript(script);
+        if (!Config.offloading && InstallationManager.isFullyInstalled() && BackendHealth.isAvailable())
+            register(prepared);
+        return prepared;
+    }
+
+    /**
+     * Runs a prepared script with {@code vars} added to its own, replacing any of the same name. Unlike
+     * {@link #execute(Script)}, runs are never cached or shared between identical callers.
+     */
+    public CompletableFuture<JsonObject> execute(PreparedScript prepared, Map<String, ?> vars) {
+        JsonObject json = vars == null ? new JsonObject() : gson.toJsonTree(vars).getAsJsonObject();
+        if (Config.offloading)
+            return dispatch(prepared.script.withVars(json), "/run", JsonStreams::readObject);
+
+        return dispatch(prepared.script, done -> {
+            JsonObject body = new JsonObject();
+            body.add("vars", json);
+            if (!prepared.script.getInputs().isEmpty()) body.add("inputs", inputs(prepared.script, done));
+            return body.toString().getBytes(StandardCharsets.UTF_8);
+        }, (jobID, body) -> runPrepared(prepared, jobID, body, true), JsonStreams::readObject);
+    }
+
+    private static CompletableFuture<String> register(PreparedScript prepared) {
+        synchronized (prepared) {
+            if (prepared.handle == null || prepared.handle.isCompletedExceptionally()) {
+                prepared.handle = BackendClient.post(
+                        "/prepare",
+                        ScriptJson.blueprint(prepared.script),
+                        HttpResponse.BodyHandlers.ofString()
+                ).thenApply(response -> {
+                    if (response.statusCode() != 200)
+                        throw new AIBackendException("Could not prepare the script, HTTP error code " + response.statusCode());
+                    return JsonParser.parseString(response.body()).getAsJsonObject().get("handle").getAsString();
+                });
+            }
+            return prepared.handle;
+        }
+    }
+
+    private static CompletableFuture<HttpResponse<InputStream>> runPrepared(PreparedScript prepared, UUID jobID,
+                                                                           byte[] body, boolean retry) {
+        return register(prepared).thenCompose(handle -> BackendClient.post(
+                "/run_prepared/" + handle,
+                jobID,
+                body,
+                HttpResponse.BodyHandlers.ofInputStream()
+        ).thenCompose(response -> {
+            if (response.statusCode() != 404 || !retry) return CompletableFuture.completedFuture(response);
+
+            // The backend no longer knows the handle, so prepare the script again and retry once.
+            try {
+                response.body().close();
+            } catch (IOException ignored) {}
+            synchronized (prepared) {
+                if (prepared.handle != null && handle.equals(prepared.handle.getNow(null))) prepared.handle = null;
+            }
+            return runPrepared(prepared, jobID, body, false);
+        }));
+    }
+
+    /**
+     * How the local AI backend is doing. While it is not available, scripts fail straight away.
+     */
+    public BackendStatus getBackendStatus() {
+        return BackendHealth.getStatus();
+    }
+
+    public ResultCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Like {@link #execute(Script)}, but leaves the results as raw bytes and only parses the fields that are
+     * read. Use this for scripts that return large values.
+     */
+    public CompletableFuture<LazyResults> executeLazy(Script script) {
+        return dispatch(script, "/run", stream -> new LazyResults(JsonStreams.readBytes(stream)));
+    }
+
+    /**
+     * Like {@link #execute(Script)}, but every return value that is raw bytes (like audio) comes back as an
+     * attachment rather than inside the JSON, so scripts no longer need to base64 encode it.
+     * Offloaded scripts cannot carry attachments, so while offloading this fails with an {@link AIBackendException};
+     * use {@link #execute(Script)} for scripts that have to run there.
+     */
+    public CompletableFuture<BinaryResults> executeBinary(Script script) {
+        if (Config.offloading)
+            return CompletableFuture.failedFuture(new AIBackendException("Binary results cannot be offloaded, use execute() while offloading."));
+
+        return dispatch(script, "/run_binary", BinaryFrames::read);
+    }
+
+    /**
+     * Runs the script and publishes what happens as it happens, such as each generated LLM token, each finished
+     * call and finally the results. Every subscription runs the script again; cancelling the subscription stops it.
+     * Offloaded scripts cannot stream, so they only publish the final {@link ScriptEvent#RESULT}.
+     */
+    public Flow.Publisher<ScriptEvent> executeStreaming(Script script) {
+        return subscriber -> {
+            SubmissionPublisher<ScriptEvent> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            stream(script, publisher);
+        };
+    }
+
+    private void stream(Script script, SubmissionPublisher<ScriptEvent> publisher) {
+        if (Config.offloading) {
+            execute(script).whenComplete((results, err) -> {
+                if (err != null) {
+                    publisher.closeExceptionally(unwrap(err));
+                    return;
+                }
+                publisher.submit(new ScriptEvent(ScriptEvent.RESULT, null, results));
+                publisher.close();
+            });
+            return;
+        }
+
+        AIRuntimeException invalid = InstallationManager.isFullyInstalled() ? validate(script) : new MissingAIPackagesException();
+        if (invalid != null) {
+            publisher.closeExceptionally(invalid);
+            return;
+        }
+
+        UUID jobID = UUID.randomUUID();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        byte[] blueprint;
+        try {
+            blueprint = blueprint(script, done);
+        } catch (UncheckedIOException e) {
+            publisher.closeExceptionally(new AIBackendException(e.getMessage()));
+            return;
+        }
+
+        Metrics.Sample sample = Metrics.start(MODID, script.getCallIDs());
+        done.whenComplete((ignored, err) -> sample.finish(err));
+
+        // The slot is held until the whole stream has been read, not just until its headers arrive.
+        CompletableFuture<Void> run = BackendDispatcher.submit(MODID, script.getPriority(), () -> {
+            sample.started();
+            sample.sent(blueprint.length);
+            read(BackendClient.post("/run_stream", jobID, blueprint, HttpResponse.BodyHandlers.ofLines()),
+                    script, sample, publisher, done);
+            return done.handle((ignored, err) -> null);
+        });
+        run.exceptionally(ex -> {
+            done.completeExceptionally(unwrap(ex));
+            return null;
+        });
+
+        Runnable abort = () -> {
+            run.cancel(true);
+            BackendClient.cancel(jobID);
+        };
+        Cancellation.onCancel(done, abort);
+        Cancellation.onTimeout(done, deadline(script), abort);
+
+        done.whenComplete((ignored, err) -> {
+            if (err == null || done.isCancelled())
+                publisher.close();
+            else
+                publisher.closeExceptionally(unwrap(err));
+        });
+    }
+
+    /**
+     * Publishes each event of a {@code /run_stream} response until the script ends or {@code done} completes.
+     */
+    private static void read(CompletableFuture<HttpResponse<Stream<String>>> exchange, Script script,
+                             Metrics.Sample sample, SubmissionPublisher<ScriptEvent> publisher,
+                             CompletableFuture<Void> done) {
+        done.whenComplete((ignored, err) -> exchange.cancel(true));
+
+        exchange.thenAcceptAsync(response -> {
+            if (response.statusCode() != 200) {
+                response.body().close();
+                done.completeExceptionally(new AIBackendException("HTTP error code " + response.statusCode()));
+                return;
+            }
+
+            try (Stream<String> lines = response.body()) {
+                Iterator<String> iterator = lines.iterator();
+                while (iterator.hasNext() && !done.isDone()) {
+                    String line = iterator.next();
+                    sample.received(line.length() + 1);
+                    if (line.isBlank()) continue;
+
+                    JsonObject entry = JsonParser.parseString(line).getAsJsonObject();
+                    String type = entry.get("event").getAsString();
+                    JsonObject data = entry.getAsJsonObject("data");
+
+                    if (type.equals("error")) {
+                        done.completeExceptionally(data.get("type").getAsString().equals("DeadlineExceeded")
+                                ? timedOut(deadline(script))
+                                : new AIBackendException(data.get("message").getAsString()));
+                        return;
+                    }
+
+                    String call = entry.get("id").isJsonNull() ? null : entry.get("id").getAsString();
+                    publisher.submit(new ScriptEvent(type, call, data));
+
+                    // The subscriber cancelled, so nobody is left to read the rest.
+                    if (!publisher.hasSubscribers()) done.cancel(true);
+                }
+            }
+
+            done.complete(null);
+        }, BackendClient.decoder()).exceptionally(ex -> {
+            done.completeExceptionally(unwrap(ex));
+            return null;
+        });
+    }
+
+    /**
+     * Runs many independent scripts in one backend request. Each script gets its own future, which completes
+     * as soon as the backend has finished that script, in whatever order they finish.
+     */
+    public List<CompletableFuture<JsonObject>> executeAll(List<Script> scripts) {
+        List<CompletableFuture<JsonObject>> futures = new ArrayList<>(scripts.size());
+
+        if (Config.offloading) {
+            for (Script script : scripts)
+                futures.add(execute(script));
+            return futures;
+        }
 
         boolean installed = InstallationManager.isFullyInstalled();
+        Script.Priority priority = Script.Priority.BACKGROUND;
+
+        List<CompletableFuture<JsonObject>> pending = new ArrayList<>();
+        List<Script> sent = new ArrayList<>();
+        List<Duration> deadlines = new ArrayList<>();
+        List<Metrics.Sample> samples = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes("{\"scripts\":[".getBytes(StandardCharsets.UTF_8));
+
+        for (Script script : scripts) {
+            CompletableFuture<JsonObject> future = new CompletableFuture<>();
+            futures.add(future);
+
+            AIRuntimeException invalid = installed ? validate(script) : new MissingAIPackagesException();
+            if (invalid != null) {
+                future.completeExceptionally(invalid);
+                continue;
+            }
+
+            if (script.isCacheable()) {
+                JsonObject cached = cache.get(script.getBlueprintHash());
+                if (cached != null) {
+                    future.complete(cached);
+                    continue;
+                }
+            }
+
+            byte[] blueprint;
+            try {
+                blueprint = blueprint(script, future);
+            } catch (UncheckedIOException e) {
+                future.completeExceptionally(new AIBackendException(e.getMessage()));
+                continue;
+            }
+
+            // The backend stops the script itself; there is no single job to cancel within a batch.
+            Cancellation.onTimeout(future, deadline(script), () -> {});
 
-        if (!installed) {
-            future.completeExceptionally(new MissingAIPackagesException());
-            return future;
+            Metrics.Sample sample = Metrics.start(MODID, script.getCallIDs());
+            future.whenComplete((results, err) -> sample.finish(err));
+            sample.sent(blueprint.length);
+            samples.add(sample);
+
+            if (!pending.isEmpty()) body.write(',');
+            body.writeBytes(blueprint);
+            pending.add(future);
+            sent.add(script);
+            deadlines.add(deadline(script));
+
+            if (script.getPriority().compareTo(priority) < 0)
+                priority = script.getPriority();
         }
+        body.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+
+        if (pending.isEmpty()) return futures;
+
+        BackendDispatcher.submit(MODID, priority, () -> {
+            samples.forEach(Metrics.Sample::started);
+            return BackendClient.post(
+                    "/run_batch",
+                    body.toByteArray(),
+                    HttpResponse.BodyHandlers.ofLines()
+            ).thenAcceptAsync(response -> {
+                if (response.statusCode() != 200) {
+                    response.body().close();
+                    AIBackendException err = new AIBackendException("HTTP error code " + response.statusCode());
+                    pending.forEach(future -> future.completeExceptionally(err));
+                    return;
+                }
+
+                try (Stream<String> lines = response.body()) {
+                    lines.forEach(line -> {
+                        if (line.isBlank()) return;
+
+                        JsonObject entry = JsonParser.parseString(line).getAsJsonObject();
+                        int index = entry.get("index").getAsInt();
+                        CompletableFuture<JsonObject> future = pending.get(index);
+                        long size = JsonStreams.utf8Length(line) + 1;
+                        samples.get(index).received(size);
+
+                        if (entry.has("error")) {
+                            future.completeExceptionally(batchError(entry.getAsJsonObject("error"), deadlines.get(index)));
+                            return;
+                        }
+
+                        JsonObject results = entry.getAsJsonObject("results");
+                        Script script = sent.get(index);
+                        if (script.isCacheable())
+                            cache.put(script.getBlueprintHash(), results, size, script.getCacheTtl());
+                        future.complete(results);
+                    });
+                }
+
+                AIBackendException missing = new AIBackendException("Script was missing from the batch response.");
+                pending.forEach(future -> future.completeExceptionally(missing));
+            }, BackendClient.decoder());
+        }).exceptionally(ex -> {
+            AIRuntimeException err = unwrap(ex);
+            pending.forEach(future -> future.completeExceptionally(err));
+            return null;
+        });
+
+        return futures;
+    }
+
+    /**
+     * The exception for a failed batch entry, matching what /run would have failed with.
+     */
+    private static AIRuntimeException batchError(JsonObject error, Duration deadline) {
+        if (error.get("status").getAsInt() == 504)
+            return timedOut(deadline);
+        return new AIBackendException(error.get("type").getAsString() + ": " + error.get("message").getAsString());
+    }
+
+    private <T> CompletableFuture<T> decode(CompletableFuture<InputStream> results, Function<InputStream, T> decoder) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        results.thenApplyAsync(decoder, BackendClient.decoder()).whenComplete((decoded, err) -> {
+            if (err == null) {
+                future.complete(decoded);
+                return;
+            }
+
+            future.completeExceptionally(unwrap(err));
+        });
+        Cancellation.onCancel(future, () -> results.cancel(true));
+
+        return future;
+    }
+
+    private static AIRuntimeException unwrap(Throwable err) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        if (cause instanceof AIRuntimeException runtime)
+            return runtime;
+        return new AIBackendException(cause.getMessage());
+    }
+
+    /**
+     * The blueprint as it is sent, with the script's byte inputs added. Shared memory written for the inputs is
+     * released once {@code done} completes.
+     */
+    private static byte[] blueprint(Script script, CompletableFuture<?> done) {
+        if (script.getInputs().isEmpty()) return ScriptJson.blueprint(script);
+
+        return ScriptJson.withField(ScriptJson.blueprint(script), "inputs", inputs(script, done));
+    }
 
+    private static JsonObject inputs(Script script, CompletableFuture<?> done) {
+        List<Path> created = new ArrayList<>();
+        done.whenComplete((results, err) -> created.forEach(SharedMemory::release));
+
+        JsonObject inputs = new JsonObject();
+        script.getInputs().forEach((key, data) -> inputs.add(key, SharedMemory.encode(data, created)));
+        return inputs;
+    }
+
+    private static Duration deadline(Script script) {
+        if (script.getDeadline() != null) return script.getDeadline();
+        return Config.scriptTimeout > 0 ? Duration.ofSeconds(Config.scriptTimeout) : null;
+    }
+
+    /**
+     * The backend's 504. The deadline may be null if it came from the backend's own limit rather than ours.
+     */
+    private static ScriptTimeoutException timedOut(Duration deadline) {
+        return deadline == null ? new ScriptTimeoutException() : new ScriptTimeoutException(deadline);
+    }
+
+    private AIRuntimeException validate(Script script) {
         if (script.getCallIDs() != null) {
             for (String callID : script.getCallIDs()) {
-                if (isCallProhibited(callID)) {
-                    future.completeExceptionally(new UnauthorizedAICallException(callID));
-                    return future;
-                }
+                if (isCallProhibited(callID))
+                    return new UnauthorizedAICallException(callID);
             }
         }
 
+        return null;
+    }
+
+    private interface Sender {
+        CompletableFuture<HttpResponse<InputStream>> post(UUID jobID, byte[] body);
+    }
+
+    private <T> CompletableFuture<T> dispatch(Script script, String endpoint, Function<InputStream, T> decoder) {
+        return dispatch(script, done -> blueprint(script, done),
+                (jobID, body) -> BackendClient.post(endpoint, jobID, body, HttpResponse.BodyHandlers.ofInputStream()),
+                decoder);
+    }
+
+    /**
+     * Runs {@code script} on the local backend through {@code sender}, or on a volunteer while offloading, with
+     * {@code body} building what is sent, and reads the results with {@code decoder}. Shared memory the body
+     * uses is released once the results arrive.
+     */
+    private <T> CompletableFuture<T> dispatch(Script script, Function<CompletableFuture<?>, byte[]> body,
+                                              Sender sender, Function<InputStream, T> decoder) {
+        CompletableFuture<InputStream> future = new CompletableFuture<>();
+
+        if (!InstallationManager.isFullyInstalled())
+            return CompletableFuture.failedFuture(new MissingAIPackagesException());
+
+        AIRuntimeException invalid = validate(script);
+        if (invalid != null)
+            return CompletableFuture.failedFuture(invalid);
+
+        byte[] blueprint;
+        try {
+            blueprint = body.apply(future);
+        } catch (UncheckedIOException e) {
+            future.completeExceptionally(new AIBackendException(e.getMessage()));
+            return decode(future, decoder);
+        }
+
+        UUID jobID = UUID.randomUUID();
+
+        // The sample also covers reading the results, so it ends on what the caller gets rather than on the
+        // response headers. Counting in the decoder sees offloaded results as well as local ones.
+        Metrics.Sample sample = Metrics.start(MODID, script.getCallIDs());
+        CompletableFuture<T> decoded = decode(future, results -> decoder.apply(sample.counting(results)));
+        decoded.whenComplete((results, err) -> sample.finish(err));
+
         if (Config.offloading) {
-            UUID jobID = UUID.randomUUID();
+            Runnable abort = () -> {
+                queue.remove(jobID);
+                ChunkSender.sendCancel(MODID, jobID);
+            };
+
+            // A script with a long deadline is allowed to stay unanswered for at least that long.
+            Duration deadline = deadline(script);
+            Duration expiry = Duration.ofSeconds(Config.offloadExpiry);
+            if (deadline != null && deadline.compareTo(expiry) > 0) expiry = deadline;
+
+            if (!queue.put(jobID, future, expiry)) {
+                future.completeExceptionally(new AIBackendBusyException("offload"));
+                return decoded;
+            }
+            Cancellation.onCancel(future, abort);
+            Cancellation.onTimeout(future, deadline, abort);
 
-            queue.put(jobID, future);
             try {
-                ChunkSender.sendExecute(script.getJsonBlueprint(), MODID, jobID);
+                sample.started();
+                sample.sent(blueprint.length);
+                ChunkSender.sendExecute(blueprint, MODID, jobID);
             } catch (Exception e) {
+                queue.remove(jobID);
                 future.completeExceptionally(e);
             }
         } else {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create("http://127.0.0.1:" + LoadManager.getPort() + "/run"))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(script.getJsonBlueprint()))
-                    .build();
-
-            HttpClient client = HttpClient.newBuilder()
-                    .version(HttpClient.Version.HTTP_1_1)
-                    .build();
-
-            client.sendAsync(
-                    request,
-                    HttpResponse.BodyHandlers.ofString()
-            ).thenAccept(response -> {
+            CompletableFuture<HttpResponse<InputStream>> exchange = BackendDispatcher.submit(MODID, script.getPriority(), () -> {
+                sample.started();
+                sample.sent(blueprint.length);
+                return sender.post(jobID, blueprint);
+            });
+            Runnable abort = () -> {
+                exchange.cancel(true);
+                BackendClient.cancel(jobID);
+            };
+            Cancellation.onCancel(future, abort);
+            Cancellation.onTimeout(future, deadline(script), abort);
+
+            exchange.thenAccept(response -> {
                 if (response.statusCode() == 200) {
-                    JsonObject obj = JsonParser.parseString(response.body()).getAsJsonObject();
-                    future.complete(obj);
+                    if (!future.complete(response.body())) {
+                        try {
+                            response.body().close();
+                        } catch (IOException ignored) {}
+                    }
                 } else {
-                    future.completeExceptionally(new AIBackendException("HTTP error code " + response.statusCode()));
+                    try {
+                        response.body().close();
+                    } catch (IOException ignored) {}
+                    if (response.statusCode() == 504)
+                        future.completeExceptionally(timedOut(deadline(script)));
+                    else
+                        future.completeExceptionally(new AIBackendException("HTTP error code " + response.statusCode()));
                 }
             }).exceptionally(ex -> {
-                future.completeExceptionally(new AIBackendException(ex.getMessage()));
+                future.completeExceptionally(unwrap(ex));
                 return null;
             });
         }
-        return future;
+        return decoded;
     }
 
+    /**
+     * @deprecated Offloaded results now arrive as a stream, see {@link #finish(InputStream, UUID)}.
+     */
+    @Deprecated
     public void finish(JsonObject results, UUID jobID) {
-        queue.remove(jobID).complete(results);
+        finish(new ByteArrayInputStream(results.toString().getBytes(StandardCharsets.UTF_8)), jobID);
+    }
+
+    public void finish(InputStream results, UUID jobID) {
+        CompletableFuture<InputStream> future = queue.remove(jobID);
+        if (future != null) future.complete(results);
+    }
+
+    private void expire(UUID jobID, CompletableFuture<InputStream> future) {
+        ChunkSender.sendCancel(MODID, jobID);
+        future.completeExceptionally(new AIBackendException("The offloaded script was never answered by the volunteer."));
     }
 
     public void error(Throwable err, UUID jobID) {
-        queue.remove(jobID).completeExceptionally(err);
+        CompletableFuture<InputStream> future = queue.remove(jobID);
+        if (future != null) future.completeExceptionally(err);
     }
 }
@@ -0,0 +1,25 @@
+package com.crow.locrowai.api.runtime;
+
+/**
+ * A snapshot of how the local AI backend is doing.
+ *
+ * @param state               whether scripts are currently let through to the backend
+ * @param latencyMillis       smoothed round trip time of health probes, or -1 before the first one answered
+ * @param errorRate           share of recent backend requests that failed, from 0 to 1
+ * @param consecutiveFailures backend requests and probes that failed in a row
+ */
+public record BackendStatus(State state, double latencyMillis, double errorRate, int consecutiveFailures) {
+
+    public enum State {
+        /** Healthy; scripts are sent to the backend. */
+        CLOSED,
+        /** Failing; new scripts fail straight away until a health probe succeeds. */
+        OPEN,
+        /** A health probe is checking whether the backend has recovered. Scripts still fail straight away. */
+        HALF_OPEN
+    }
+
+    public boolean isAvailable() {
+        return state == State.CLOSED;
+    }
+}
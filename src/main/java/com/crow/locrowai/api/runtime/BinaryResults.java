@@ -0,0 +1,45 @@
+package com.crow.locrowai.api.runtime;
+
+import com.google.gson.JsonObject;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Script results where every return value that was raw bytes (like audio) arrives as an attachment instead of
+ * inside the JSON, so it never has to be base64 encoded.
+ */
+public class BinaryResults {
+
+    private final JsonObject results;
+    private final Map<String, ByteBuffer> attachments;
+
+    public BinaryResults(JsonObject results, Map<String, ByteBuffer> attachments) {
+        this.results = results;
+        this.attachments = Map.copyOf(attachments);
+    }
+
+    /**
+     * The return values that were not bytes.
+     */
+    public JsonObject getResults() {
+        return results;
+    }
+
+    public Set<String> getAttachmentNames() {
+        return attachments.keySet();
+    }
+
+    public boolean hasAttachment(String name) {
+        return attachments.containsKey(name);
+    }
+
+    /**
+     * A read-only view of the bytes returned as {@code name}, or null if there were none.
+     */
+    public ByteBuffer getAttachment(String name) {
+        ByteBuffer attachment = attachments.get(name);
+        return attachment == null ? null : attachment.asReadOnlyBuffer();
+    }
+}
@@ -1,7 +1,5 @@
 package com.crow.locrowai.api.runtime;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 
 import java.util.ArrayList;
@@ -16,17 +14,26 @@ public class Call {
     private ArrayList<Call> calls;
     private Conditional condition;
     private Loop loop;
-    private final transient Gson gson;
     private final Map<String, JsonElement> feeds = new HashMap<>();
     private final Map<String, JsonElement> initialize = new HashMap<>();
 
     public Call(String id) {
         this.id = id;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
     }
 
-    public Call() {
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    public Call() {}
+
+    /**
+     * A copy that shares everything but the condition and nested calls, which the compiler may replace.
+     */
+    Call(Call other, Conditional condition, List<Call> calls) {
+        this.id = other.id;
+        this.call = other.call;
+        this.calls = calls == null ? null : new ArrayList<>(calls);
+        this.condition = condition;
+        this.loop = other.loop;
+        this.feeds.putAll(other.feeds);
+        this.initialize.putAll(other.initialize);
     }
 
     public Call call(String call) {
@@ -41,12 +48,12 @@ public class Call {
     }
 
     public <T> Call feed(String key, T val) {
-        this.feeds.put(key, this.gson.toJsonTree(val));
+        this.feeds.put(key, ScriptJson.GSON.toJsonTree(val));
         return this;
     }
 
     public <T> Call initialize(String key, T val) {
-        this.initialize.put(key, this.gson.toJsonTree(val));
+        this.initialize.put(key, ScriptJson.GSON.toJsonTree(val));
         return this;
     }
 
@@ -61,7 +68,7 @@ public class Call {
     }
 
     public List<String> iterCallIDs() {
-        if (calls == null) return List.of(call);
+        if (calls == null) return call == null ? List.of() : List.of(call);
 
         List<String> out = new ArrayList<>();
 
@@ -71,4 +78,32 @@ public class Call {
 
         return out;
     }
+
+    String getId() {
+        return id;
+    }
+
+    String getCall() {
+        return call;
+    }
+
+    List<Call> getCalls() {
+        return calls;
+    }
+
+    Conditional getCondition() {
+        return condition;
+    }
+
+    Loop getLoop() {
+        return loop;
+    }
+
+    Map<String, JsonElement> getFeeds() {
+        return feeds;
+    }
+
+    Map<String, JsonElement> getInitialize() {
+        return initialize;
+    }
 }
@@ -1,7 +1,5 @@
 package com.crow.locrowai.api.runtime;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 
 import java.util.ArrayList;
@@ -32,19 +30,16 @@ public class Conditional  {
     private JsonElement left;
     private JsonElement right;
     private String operation;
-    private transient Gson gson;
 
     public <L, R> Conditional(L left, Operation operation, R right) {
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
-        this.left = this.gson.toJsonTree(left);
-        this.right = this.gson.toJsonTree(right);
+        this.left = ScriptJson.GSON.toJsonTree(left);
+        this.right = ScriptJson.GSON.toJsonTree(right);
         if (operation != null)
             this.operation = operation.getOperation();
     }
 
     public <L> Conditional(L left) {
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
-        this.left = this.gson.toJsonTree(left);
+        this.left = ScriptJson.GSON.toJsonTree(left);
     }
 
     public Conditional() {}
@@ -70,6 +65,30 @@ public class Conditional  {
         return wrapper;
     }
 
+    List<Conditional> getAND() {
+        return AND;
+    }
+
+    List<Conditional> getOR() {
+        return OR;
+    }
+
+    Conditional getNOT() {
+        return NOT;
+    }
+
+    JsonElement getLeft() {
+        return left;
+    }
+
+    JsonElement getRight() {
+        return right;
+    }
+
+    String getOperation() {
+        return operation;
+    }
+
     public Conditional and(Conditional AND) {
         if (this.AND == null) this.AND = new ArrayList<>();
         this.AND.add(AND);
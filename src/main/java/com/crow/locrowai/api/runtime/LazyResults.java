@@ -0,0 +1,97 @@
+package com.crow.locrowai.api.runtime;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Script results that are kept as the raw response bytes. Each return value is only parsed when it is asked
+ * for, so a large field (like base64 audio) is never materialized unless the caller actually reads it.
+ */
+public class LazyResults {
+
+    private final byte[] json;
+    private Set<String> keys;
+
+    public LazyResults(byte[] json) {
+        this.json = json;
+    }
+
+    public Set<String> keys() {
+        if (keys == null) {
+            Set<String> out = new LinkedHashSet<>();
+            try (JsonReader reader = reader()) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    out.add(reader.nextName());
+                    reader.skipValue();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            keys = Set.copyOf(out);
+        }
+
+        return keys;
+    }
+
+    public boolean has(String key) {
+        return keys().contains(key);
+    }
+
+    public JsonElement get(String key) {
+        try (JsonReader reader = seek(key)) {
+            return reader == null ? null : JsonParser.parseReader(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getString(String key) {
+        try (JsonReader reader = seek(key)) {
+            if (reader == null || reader.peek() == JsonToken.NULL) return null;
+            return reader.nextString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public JsonObject getAsJsonObject() {
+        try (JsonReader reader = reader()) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int size() {
+        return json.length;
+    }
+
+    private JsonReader seek(String key) throws IOException {
+        JsonReader reader = reader();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(key)) return reader;
+            reader.skipValue();
+        }
+        reader.close();
+        return null;
+    }
+
+    private JsonReader reader() {
+        Reader in = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8);
+        return new JsonReader(in);
+    }
+}
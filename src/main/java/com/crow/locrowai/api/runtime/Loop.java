@@ -12,4 +12,8 @@ public class Loop {
     public Loop(Conditional condition) {
         this.condition = condition;
     }
+
+    Conditional getCondition() {
+        return condition;
+    }
 }
@@ -32,11 +32,8 @@ public class RuntimeExample {
                 .then(new Call()
                         .call("/audio/pcm_convert")
                         .feed("audio", "{{ ^audio }}"))
-                .then(new Call()
-                        .call("/base64/encode")
-                        .feed("bytes", "{{ ^audio }}"))
-                // return the result "base64" from the last executed call as "audio"
-                .returns("audio", "{{ ^base64 }}")
+                // return the raw bytes "audio" from the last executed call as "audio"
+                .returns("audio", "{{ ^audio }}")
                 // return the result "timestamps" from the call of id "tts" as "transcript"
                 .returns("transcript", "{{ tts.timestamps }}");
 
@@ -44,8 +41,12 @@ public class RuntimeExample {
         Script script = scriptBuilder.build();
         System.out.println(script.getJsonBlueprint());
 
-        // run the script and print the "transcript" result when they arrive
-        context.execute(script).thenAccept(results -> System.out.println(results.get("transcript").getAsString()))
+        // run the script and print the "transcript" result and the size of the "audio" attachment when they arrive
+        context.executeBinary(script).thenAccept(results -> {
+                    System.out.println(results.getResults().get("transcript"));
+                    if (results.hasAttachment("audio"))
+                        System.out.println(results.getAttachment("audio").remaining() + " bytes of audio");
+                })
                 .exceptionally(err -> null);
     }
 }
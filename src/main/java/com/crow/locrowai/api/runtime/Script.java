@@ -1,22 +1,123 @@
 package com.crow.locrowai.api.runtime;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class Script {
 
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
     private final Set<String> callIDs;
-    private final String blueprint;
+    private final byte[] blueprint;
+    private final Priority priority;
+    private final Duration cacheTtl;
+    private final Duration deadline;
+    private final Map<String, ByteBuffer> inputs;
+    private String blueprintHash;
 
     public Script(Set<String> callIDs, String blueprint) {
+        this(callIDs, blueprint.getBytes(StandardCharsets.UTF_8), Priority.INTERACTIVE, null, null, Map.of());
+    }
+
+    Script(Set<String> callIDs, byte[] blueprint, Priority priority, Duration cacheTtl, Duration deadline,
+           Map<String, ByteBuffer> inputs) {
         if (callIDs == null) callIDs = Set.of();
         this.callIDs = Set.copyOf(callIDs);
         this.blueprint = blueprint;
+        this.priority = priority;
+        this.cacheTtl = cacheTtl;
+        this.deadline = deadline;
+        this.inputs = Collections.unmodifiableSortedMap(new TreeMap<>(inputs));
     }
 
     public Set<String> getCallIDs() {
         return this.callIDs;
     }
     public String getJsonBlueprint() {
+        return new String(blueprint, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A read-only view of the blueprint as UTF-8 JSON, without decoding or copying it.
+     */
+    public ByteBuffer getJsonBytes() {
+        return ByteBuffer.wrap(blueprint).asReadOnlyBuffer();
+    }
+
+    byte[] getBlueprintBytes() {
         return blueprint;
     }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public boolean isCacheable() {
+        return cacheTtl != null;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * How long the script may run, or null if it falls back to the configured script timeout.
+     */
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * A copy of this script with {@code vars} added to its vars, replacing any of the same name.
+     */
+    public Script withVars(JsonObject vars) {
+        JsonObject blueprint = JsonParser.parseString(getJsonBlueprint()).getAsJsonObject();
+        if (!blueprint.has("vars") || !blueprint.get("vars").isJsonObject()) blueprint.add("vars", new JsonObject());
+
+        JsonObject merged = blueprint.getAsJsonObject("vars");
+        vars.entrySet().forEach(entry -> merged.add(entry.getKey(), entry.getValue()));
+
+        return new Script(callIDs, blueprint.toString().getBytes(StandardCharsets.UTF_8), priority, cacheTtl, deadline, inputs);
+    }
+
+    /**
+     * Raw byte inputs that are added to the blueprint's vars when the script is sent.
+     */
+    public Map<String, ByteBuffer> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * SHA-256 of the blueprint and its inputs, as hex. Two scripts with the same hash do exactly the same work.
+     */
+    public String getBlueprintHash() {
+        if (blueprintHash == null) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(blueprint);
+                inputs.forEach((key, data) -> {
+                    digest.update(key.getBytes(StandardCharsets.UTF_8));
+                    digest.update(data.duplicate());
+                });
+                blueprintHash = HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return blueprintHash;
+    }
 }
@@ -1,15 +1,18 @@
 package com.crow.locrowai.api.runtime;
 
+import com.crow.locrowai.api.runtime.exceptions.InvalidScriptException;
 import com.crow.locrowai.internal.LocrowAI;
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.*;
 
 public class ScriptBuilder {
 
-    private final transient Gson gson = new Gson();
-    private final transient Set<String> callIDs = new HashSet<>();
+    private transient Script.Priority priority = Script.Priority.INTERACTIVE;
+    private transient Duration cacheTtl;
+    private final transient Map<String, ByteBuffer> inputs = new HashMap<>();
 
     private final String api_version = "0.4.0";
 
@@ -19,23 +22,115 @@ public class ScriptBuilder {
 
     private Map<String, JsonElement> returns = new HashMap<>();
 
+    private Long deadline_ms;
+
     public <T> ScriptBuilder var(String key, T value) {
-        this.vars.put(key, this.gson.toJsonTree(value));
+        this.vars.put(key, ScriptJson.GSON.toJsonTree(value));
+        return this;
+    }
+
+    /**
+     * Passes raw bytes to the script as {@code {{ vars.key }}}. Large inputs go through shared memory when that is
+     * enabled, and are sent as base64 otherwise.
+     */
+    public ScriptBuilder input(String key, ByteBuffer data) {
+        this.inputs.put(key, data.asReadOnlyBuffer());
         return this;
     }
 
     public ScriptBuilder then(Call call) {
-        callIDs.addAll(call.iterCallIDs());
         script.add(call);
         return this;
     }
 
     public <T> ScriptBuilder returns(String key, T value) {
-        returns.put(key, gson.toJsonTree(value));
+        returns.put(key, ScriptJson.GSON.toJsonTree(value));
+        return this;
+    }
+
+    public ScriptBuilder priority(Script.Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Marks the script as a pure function of its blueprint, so its results may be reused for up to {@code ttl}
+     * by any identical script run through the same context.
+     */
+    public ScriptBuilder cacheable(Duration ttl) {
+        this.cacheTtl = ttl;
+        return this;
+    }
+
+    /**
+     * Stops the script once it has run for {@code deadline}. The backend skips any calls left after that, and
+     * the future fails with a {@link com.crow.locrowai.api.runtime.exceptions.ScriptTimeoutException}.
+     */
+    public ScriptBuilder deadline(Duration deadline) {
+        this.deadline_ms = deadline == null ? null : Math.max(1, deadline.toMillis());
         return this;
     }
 
+    /**
+     * Checks the script and folds away what can be decided before it runs, see {@link #compile()}.
+     *
+     * @throws InvalidScriptException if the backend would reject the script
+     */
     public Script build() {
-        return new Script(callIDs, gson.toJson(this));
+        Blueprint blueprint = compile();
+        return new Script(blueprint.callIDs(), ScriptJson.write(blueprint), priority, cacheTtl, blueprint.deadline(), inputs);
+    }
+
+    /**
+     * Serializes the script once, leaving every {@link ScriptTemplate#slot(String)} to be filled in by
+     * {@link ScriptTemplate#bind(Map)}. Conditions on slots are never folded.
+     *
+     * @throws InvalidScriptException if the backend would reject the script
+     */
+    public ScriptTemplate template() {
+        Blueprint blueprint = compile();
+        return new ScriptTemplate(blueprint.callIDs(), ScriptJson.write(blueprint), priority, cacheTtl,
+                blueprint.deadline(), Map.copyOf(inputs));
+    }
+
+    /**
+     * Fails on anything the backend would only reject after a round trip: calls that are not call IDs or belong
+     * to no declared extension, and {@code {{ id.key }}} references to ids no call has. Conditions that only
+     * compare literals are worked out here, so calls they rule out are never sent and those that always hold
+     * are sent without them.
+     */
+    private Blueprint compile() {
+        return new Blueprint(api_version, vars, ScriptCompiler.compile(script, returns.values()), returns, deadline_ms);
+    }
+
+    /**
+     * What is sent, in the builder's field order: the builder's own fields, with the calls as compiled.
+     */
+    private static class Blueprint {
+        private final String api_version;
+        private final Map<String, JsonElement> vars;
+        private final List<Call> script;
+        private final Map<String, JsonElement> returns;
+        private final Long deadline_ms;
+
+        Blueprint(String api_version, Map<String, JsonElement> vars, List<Call> script,
+                  Map<String, JsonElement> returns, Long deadline_ms) {
+            this.api_version = api_version;
+            this.vars = vars;
+            this.script = script;
+            this.returns = returns;
+            this.deadline_ms = deadline_ms;
+        }
+
+        Set<String> callIDs() {
+            Set<String> callIDs = new HashSet<>();
+            for (Call call : script)
+                callIDs.addAll(call.iterCallIDs());
+            return callIDs;
+        }
+
+        Duration deadline() {
+            return deadline_ms == null ? null : Duration.ofMillis(deadline_ms);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,303 @@
+package com.crow.locrowai.api.runtime;
+
+import com.crow.locrowai.api.registration.AIRegistry;
+import com.crow.locrowai.api.runtime.exceptions.InvalidScriptException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks a script before it is sent, and works out what can be decided without running it. Conditions on
+ * literals are folded, calls behind conditions that can never hold are dropped, and conditions that always hold
+ * are left out. Folding follows the backend's (Python) semantics and leaves anything it is unsure of to the backend.
+ */
+final class ScriptCompiler {
+
+    private static final Pattern CALL_ID = Pattern.compile("/[A-Za-z0-9_.-]+(/[A-Za-z0-9_.-]+)*");
+
+    // var_pattern in the backend's app.py.
+    private static final Pattern REFERENCE = Pattern.compile(
+            "(?<!\\\\)(?:\\\\\\\\)*\\{\\{\\s*(\\^|\\.{1,2}|[a-z0-9_]+\\.)([a-z0-9_]+)\\.?((?:\\.?(?:[a-z0-9_]+)|\\[-?\\d+])*)\\s*}}",
+            Pattern.CASE_INSENSITIVE
+    );
+
+    private enum Truth {
+        TRUE,
+        FALSE,
+        UNKNOWN;
+
+        static Truth of(boolean value) {
+            return value ? TRUE : FALSE;
+        }
+
+        Truth not() {
+            return this == UNKNOWN ? UNKNOWN : of(this == FALSE);
+        }
+    }
+
+    private ScriptCompiler() {}
+
+    /**
+     * @return the calls as they should be sent, which may share untouched calls with {@code script}
+     * @throws InvalidScriptException if the backend would reject the script
+     */
+    static List<Call> compile(List<Call> script, Collection<JsonElement> returns) {
+        Set<String> ids = new HashSet<>();
+        declare(script, ids);
+
+        Set<String> extensions = AIRegistry.getDeclared();
+        for (Call call : script)
+            check(call, ids, extensions);
+        for (JsonElement value : returns)
+            checkReferences(value, ids);
+
+        return fold(script);
+    }
+
+    private static void declare(List<Call> calls, Set<String> ids) {
+        for (Call call : calls) {
+            if (call.getId() != null) ids.add(call.getId());
+            if (call.getCalls() != null) declare(call.getCalls(), ids);
+        }
+    }
+
+    private static void check(Call call, Set<String> ids, Set<String> extensions) {
+        if (call.getCalls() != null) {
+            for (Call nested : call.getCalls())
+                check(nested, ids, extensions);
+        } else if (call.getCall() == null) {
+            throw new InvalidScriptException("call " + (call.getId() == null ? "without an id" : "\"" + call.getId() + "\"") + " has neither a function nor nested calls.");
+        } else {
+            if (!CALL_ID.matcher(call.getCall()).matches())
+                throw new InvalidScriptException("\"" + call.getCall() + "\" is not a call ID, which look like \"/extension/function\".");
+            // Before AIRegistry.init every extension is unknown, so leave the check to the backend.
+            if (!extensions.isEmpty() && !extensions.contains(call.getCall().split("/")[1]))
+                throw new InvalidScriptException("\"" + call.getCall() + "\" belongs to no extension any mod declared.");
+        }
+
+        call.getFeeds().values().forEach(value -> checkReferences(value, ids));
+        call.getInitialize().values().forEach(value -> checkReferences(value, ids));
+        checkReferences(call.getCondition(), ids);
+        if (call.getLoop() != null) checkReferences(call.getLoop().getCondition(), ids);
+    }
+
+    private static void checkReferences(Conditional condition, Set<String> ids) {
+        if (condition == null) return;
+
+        if (condition.getAND() != null) condition.getAND().forEach(nested -> checkReferences(nested, ids));
+        if (condition.getOR() != null) condition.getOR().forEach(nested -> checkReferences(nested, ids));
+        checkReferences(condition.getNOT(), ids);
+        checkReferences(condition.getLeft(), ids);
+        checkReferences(condition.getRight(), ids);
+    }
+
+    private static void checkReferences(JsonElement value, Set<String> ids) {
+        if (value == null || value.isJsonNull()) return;
+
+        if (value.isJsonArray()) {
+            value.getAsJsonArray().forEach(element -> checkReferences(element, ids));
+        } else if (value.isJsonObject()) {
+            value.getAsJsonObject().entrySet().forEach(entry -> checkReferences(entry.getValue(), ids));
+        } else if (value.getAsJsonPrimitive().isString()) {
+            Matcher matcher = REFERENCE.matcher(value.getAsString());
+            while (matcher.find()) {
+                String space = matcher.group(1);
+                // ^, . and .. are relative to wherever the script is when it gets there.
+                if (!space.endsWith(".") || space.startsWith(".")) continue;
+
+                String id = space.substring(0, space.length() - 1);
+                if (!id.equals("vars") && !ids.contains(id))
+                    throw new InvalidScriptException(matcher.group().strip() + " refers to \"" + id + "\", which no call in the script has as its id.");
+            }
+        }
+    }
+
+    private static List<Call> fold(List<Call> calls) {
+        List<Call> folded = new ArrayList<>(calls.size());
+        boolean changed = false;
+
+        for (Call call : calls) {
+            Call result = fold(call);
+            if (result != null) folded.add(result);
+            changed |= result != call;
+        }
+
+        return changed ? folded : calls;
+    }
+
+    /**
+     * @return the call as it should be sent, or null if it can never run
+     */
+    private static Call fold(Call call) {
+        Conditional condition = call.getCondition();
+        Truth truth = truth(condition);
+        if (truth == Truth.FALSE) return null;
+
+        List<Call> calls = call.getCalls() == null ? null : fold(call.getCalls());
+        if (truth == Truth.UNKNOWN && calls == call.getCalls()) return call;
+
+        return new Call(call, truth == Truth.TRUE ? null : condition, calls);
+    }
+
+    /**
+     * Mirrors resolve_condition in the backend, where only the first of AND, OR and NOT that is set counts.
+     */
+    private static Truth truth(Conditional condition) {
+        if (condition == null) return Truth.TRUE;
+
+        if (condition.getAND() != null) {
+            Truth result = Truth.TRUE;
+            for (Conditional nested : condition.getAND()) {
+                Truth truth = truth(nested);
+                if (truth == Truth.FALSE) return Truth.FALSE;
+                if (truth == Truth.UNKNOWN) result = Truth.UNKNOWN;
+            }
+            return result;
+        }
+        if (condition.getOR() != null) {
+            Truth result = Truth.FALSE;
+            for (Conditional nested : condition.getOR()) {
+                Truth truth = truth(nested);
+                if (truth == Truth.TRUE) return Truth.TRUE;
+                if (truth == Truth.UNKNOWN) result = Truth.UNKNOWN;
+            }
+            return result;
+        }
+        if (condition.getNOT() != null) return truth(condition.getNOT()).not();
+
+        JsonElement left = condition.getLeft(), right = condition.getRight();
+        if (right == null || right.isJsonNull()) {
+            // Containers keep their size however their contents resolve.
+            if (left != null && left.isJsonArray()) return Truth.of(!left.getAsJsonArray().isEmpty());
+            if (left != null && left.isJsonObject()) return Truth.of(!left.getAsJsonObject().isEmpty());
+            return isLiteral(left) ? Truth.of(isTruthy(left)) : Truth.UNKNOWN;
+        }
+        if (!isLiteral(left) || !isLiteral(right)) return Truth.UNKNOWN;
+
+        String operation = condition.getOperation();
+        if (operation == null) return Truth.FALSE;
+        return switch (operation) {
+            case "==" -> Truth.of(equal(left, right));
+            case "<" -> compare(left, right, order -> order < 0);
+            case ">" -> compare(left, right, order -> order > 0);
+            case "<=" -> compare(left, right, order -> order <= 0);
+            case ">=" -> compare(left, right, order -> order >= 0);
+            case "in" -> contains(right, left);
+            default -> Truth.FALSE;
+        };
+    }
+
+    private static boolean isLiteral(JsonElement value) {
+        if (value == null || value.isJsonNull()) return true;
+
+        if (value.isJsonArray()) {
+            for (JsonElement element : value.getAsJsonArray())
+                if (!isLiteral(element)) return false;
+            return true;
+        }
+        if (value.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet())
+                if (!isLiteral(entry.getValue())) return false;
+            return true;
+        }
+
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        return !primitive.isString()
+                || (!ScriptTemplate.isSlot(primitive.getAsString()) && !REFERENCE.matcher(primitive.getAsString()).find());
+    }
+
+    private static boolean isTruthy(JsonElement value) {
+        if (value == null || value.isJsonNull()) return false;
+
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        if (primitive.isBoolean()) return primitive.getAsBoolean();
+        if (primitive.isNumber()) return primitive.getAsBigDecimal().signum() != 0;
+        return !primitive.getAsString().isEmpty();
+    }
+
+    /**
+     * Python's ==, where True and False are also 1 and 0.
+     */
+    private static boolean equal(JsonElement left, JsonElement right) {
+        if (left == null || left.isJsonNull() || right == null || right.isJsonNull())
+            return (left == null || left.isJsonNull()) && (right == null || right.isJsonNull());
+
+        BigDecimal leftNumber = number(left), rightNumber = number(right);
+        if (leftNumber != null || rightNumber != null)
+            return leftNumber != null && rightNumber != null && leftNumber.compareTo(rightNumber) == 0;
+
+        if (left.isJsonArray() && right.isJsonArray()) {
+            JsonArray leftArray = left.getAsJsonArray(), rightArray = right.getAsJsonArray();
+            if (leftArray.size() != rightArray.size()) return false;
+            for (int i = 0; i < leftArray.size(); i++)
+                if (!equal(leftArray.get(i), rightArray.get(i))) return false;
+            return true;
+        }
+        if (left.isJsonObject() && right.isJsonObject()) {
+            JsonObject leftObject = left.getAsJsonObject(), rightObject = right.getAsJsonObject();
+            if (!leftObject.keySet().equals(rightObject.keySet())) return false;
+            for (String key : leftObject.keySet())
+                if (!equal(leftObject.get(key), rightObject.get(key))) return false;
+            return true;
+        }
+        if (left.isJsonPrimitive() && right.isJsonPrimitive())
+            return left.getAsJsonPrimitive().isString() && right.getAsJsonPrimitive().isString()
+                    && left.getAsString().equals(right.getAsString());
+        return false;
+    }
+
+    private static BigDecimal number(JsonElement value) {
+        if (!value.isJsonPrimitive()) return null;
+
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        if (primitive.isBoolean()) return primitive.getAsBoolean() ? BigDecimal.ONE : BigDecimal.ZERO;
+        if (primitive.isNumber()) return primitive.getAsBigDecimal();
+        return null;
+    }
+
+    private interface Order {
+        boolean holds(int order);
+    }
+
+    /**
+     * Orders numbers and strings the way Python does. Anything else would raise on the backend, so it is left to it.
+     */
+    private static Truth compare(JsonElement left, JsonElement right, Order order) {
+        if (left == null || left.isJsonNull() || right == null || right.isJsonNull()) return Truth.UNKNOWN;
+
+        BigDecimal leftNumber = number(left), rightNumber = number(right);
+        if (leftNumber != null && rightNumber != null) return Truth.of(order.holds(leftNumber.compareTo(rightNumber)));
+
+        if (left.isJsonPrimitive() && left.getAsJsonPrimitive().isString()
+                && right.isJsonPrimitive() && right.getAsJsonPrimitive().isString()) {
+            // Python compares code points, not UTF-16 units.
+            int[] a = left.getAsString().codePoints().toArray(), b = right.getAsString().codePoints().toArray();
+            return Truth.of(order.holds(Arrays.compare(a, b)));
+        }
+        return Truth.UNKNOWN;
+    }
+
+    /**
+     * Python's {@code needle in haystack} for strings, lists and dicts.
+     */
+    private static Truth contains(JsonElement haystack, JsonElement needle) {
+        boolean stringNeedle = needle != null && needle.isJsonPrimitive() && needle.getAsJsonPrimitive().isString();
+
+        if (haystack.isJsonArray()) {
+            for (JsonElement element : haystack.getAsJsonArray())
+                if (equal(element, needle)) return Truth.TRUE;
+            return Truth.FALSE;
+        }
+        if (haystack.isJsonObject())
+            return stringNeedle ? Truth.of(haystack.getAsJsonObject().has(needle.getAsString())) : Truth.UNKNOWN;
+        if (haystack.getAsJsonPrimitive().isString())
+            return stringNeedle ? Truth.of(haystack.getAsString().contains(needle.getAsString())) : Truth.UNKNOWN;
+        return Truth.UNKNOWN;
+    }
+}
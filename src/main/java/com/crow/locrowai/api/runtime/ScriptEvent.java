@@ -0,0 +1,29 @@
+package com.crow.locrowai.api.runtime;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Something that happened while a streamed script was running.
+ *
+ * @param type what kind of event this is, usually {@link #TOKEN}, {@link #CALL} or {@link #RESULT}. Extensions may
+ *             emit their own types.
+ * @param call the ID of the call that emitted the event, or null for {@link #RESULT}
+ * @param data the event's payload. For {@link #RESULT} these are the script's results.
+ */
+public record ScriptEvent(String type, String call, JsonObject data) {
+
+    /** A piece of generated text, found under {@code "text"}. */
+    public static final String TOKEN = "token";
+    /** A call finished. The function it ran is found under {@code "call"}. */
+    public static final String CALL = "call";
+    /** The script finished. Always the last event. */
+    public static final String RESULT = "result";
+
+    public boolean isToken() {
+        return TOKEN.equals(type);
+    }
+
+    public String getText() {
+        return isToken() ? data.get("text").getAsString() : null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.crow.locrowai.api.runtime;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The Gson every builder in this package shares. Gson is thread-safe, so one compact instance and its adapter
+ * cache serve all of them.
+ */
+@ApiStatus.Internal
+public final class ScriptJson {
+
+    static final Gson GSON = new Gson();
+
+    // Buffers that grew past this for one huge script are dropped instead of being kept for the thread's lifetime.
+    private static final int MAX_RETAINED = 1 << 20;
+
+    private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    private ScriptJson() {}
+
+    /**
+     * Serializes {@code src} as UTF-8 JSON through this thread's buffer, without building a String first.
+     */
+    static byte[] write(Object src) {
+        Buffer buffer = buffers.get();
+        try {
+            buffer.reset();
+
+            JsonWriter writer = new JsonWriter(buffer.writer);
+            GSON.toJson(src, src.getClass(), writer);
+            writer.flush();
+
+            return buffer.bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (buffer.bytes.capacity() > MAX_RETAINED) buffers.remove();
+        }
+    }
+
+    /**
+     * The blueprint bytes the script holds, for sending as they are. The array is shared and must not be changed.
+     */
+    public static byte[] blueprint(Script script) {
+        return script.getBlueprintBytes();
+    }
+
+    /**
+     * {@code object}, a serialized JSON object, with {@code name} set to {@code value}. Only the value is
+     * serialized; the rest is copied as it is.
+     */
+    public static byte[] withField(byte[] object, String name, Object value) {
+        int end = object.length - 1;
+        while (end >= 0 && object[end] != '}') end--;
+        if (end < 0) throw new IllegalArgumentException("Not a JSON object.");
+
+        int last = end - 1;
+        while (last >= 0 && Character.isWhitespace(object[last])) last--;
+        byte[] key = ((last >= 0 && object[last] == '{' ? "" : ",") + GSON.toJson(name) + ":").getBytes(StandardCharsets.UTF_8);
+
+        byte[] head = Arrays.copyOf(object, end + key.length);
+        System.arraycopy(key, 0, head, end, key.length);
+        byte[][] segments = {head, Arrays.copyOfRange(object, end, object.length)};
+
+        return splice(segments, new String[]{name}, Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Writes the segments as they are, with each slot's value serialized between them.
+     */
+    static byte[] splice(byte[][] segments, String[] slots, Map<String, ?> values) {
+        Buffer buffer = buffers.get();
+        try {
+            buffer.reset();
+
+            JsonWriter writer = new JsonWriter(buffer.writer);
+            for (int i = 0; i < slots.length; i++) {
+                buffer.bytes.write(segments[i]);
+
+                Object value = values.get(slots[i]);
+                if (value == null) GSON.toJson(JsonNull.INSTANCE, writer);
+                else GSON.toJson(value, value.getClass(), writer);
+                // A JsonWriter only takes one top-level value, and the raw segments bypass it anyway.
+                writer.flush();
+                writer = new JsonWriter(buffer.writer);
+            }
+            buffer.bytes.write(segments[slots.length]);
+
+            return buffer.bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (buffer.bytes.capacity() > MAX_RETAINED) buffers.remove();
+        }
+    }
+
+    private static class Buffer {
+        final Bytes bytes = new Bytes();
+        final Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+
+        void reset() throws IOException {
+            // Drops anything a failed write left behind in the encoder.
+            writer.flush();
+            bytes.reset();
+        }
+    }
+
+    private static class Bytes extends ByteArrayOutputStream {
+        Bytes() {
+            super(1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
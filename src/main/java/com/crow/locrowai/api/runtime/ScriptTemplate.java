@@ -0,0 +1,126 @@
+package com.crow.locrowai.api.runtime;
+
+import com.crow.locrowai.api.runtime.exceptions.InvalidScriptException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * A script serialized once, with named slots that are filled in for each run. Binding only splices the slot
+ * values between the precomputed bytes, so scripts that are built often with a few different feeds skip
+ * serializing the whole tree every time.
+ * <pre>
+ * ScriptTemplate reply = new ScriptBuilder()
+ *         .then(new Call().call("/llm/chat").feed("messages", ScriptTemplate.slot("messages")))
+ *         .then(new Call().call("/tts").feed("voice", ScriptTemplate.slot("voice")).feed("text", "{{ ^content }}"))
+ *         .returns("audio", "{{ ^audio }}")
+ *         .template();
+ *
+ * Script script = reply.bind(Map.of("messages", messages, "voice", "am_puck"));
+ * </pre>
+ * A slot stands for a whole value, wherever a var, feed, initializer, return or conditional operand goes. Slots
+ * inside a longer string or used as an object key are rejected when the template is built.
+ */
+public class ScriptTemplate {
+
+    // Slots are wrapped in NUL characters, which Gson always escapes, so their serialized form is easy to find.
+    private static final String SLOT_MARKER = "\u0000locrowai-slot:";
+    private static final byte[] SERIALIZED_MARKER = "\\u0000locrowai-slot:".getBytes(StandardCharsets.UTF_8);
+
+    private final Set<String> callIDs;
+    private final Script.Priority priority;
+    private final Duration cacheTtl;
+    private final Duration deadline;
+    private final Map<String, ByteBuffer> inputs;
+
+    // The blueprint is segments[0], slots[0], segments[1], ..., slots[n - 1], segments[n].
+    private final byte[][] segments;
+    private final String[] slots;
+    private final Set<String> names;
+
+    /**
+     * A placeholder for a value given later to {@link #bind(Map)}.
+     */
+    public static String slot(String name) {
+        if (name.indexOf('\u0000') >= 0)
+            throw new IllegalArgumentException("Slot names cannot contain NUL characters.");
+        return SLOT_MARKER + name + '\u0000';
+    }
+
+    static boolean isSlot(String value) {
+        return value.startsWith(SLOT_MARKER);
+    }
+
+    ScriptTemplate(Set<String> callIDs, byte[] blueprint, Script.Priority priority, Duration cacheTtl,
+                   Duration deadline, Map<String, ByteBuffer> inputs) {
+        this.callIDs = callIDs;
+        this.priority = priority;
+        this.cacheTtl = cacheTtl;
+        this.deadline = deadline;
+        this.inputs = inputs;
+
+        List<byte[]> segments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int start = 0;
+        for (int open = 0; open < blueprint.length; open++) {
+            if (blueprint[open] != '"') continue;
+
+            int close = open + 1;
+            while (blueprint[close] != '"') close += blueprint[close] == '\\' ? 2 : 1;
+
+            if (contains(blueprint, SERIALIZED_MARKER, open + 1, close)) {
+                String value = ScriptJson.GSON.fromJson(new String(blueprint, open, close + 1 - open, StandardCharsets.UTF_8), String.class);
+                if (!isSlot(value) || value.indexOf('\u0000', SLOT_MARKER.length()) != value.length() - 1)
+                    throw new InvalidScriptException("a template slot has to be a whole value, not part of a string");
+
+                int next = close + 1;
+                while (next < blueprint.length && Character.isWhitespace(blueprint[next])) next++;
+                if (next < blueprint.length && blueprint[next] == ':')
+                    throw new InvalidScriptException("a template slot cannot be used as an object key");
+
+                segments.add(Arrays.copyOfRange(blueprint, start, open));
+                slots.add(value.substring(SLOT_MARKER.length(), value.length() - 1));
+                start = close + 1;
+            }
+            open = close;
+        }
+        segments.add(Arrays.copyOfRange(blueprint, start, blueprint.length));
+
+        this.segments = segments.toArray(new byte[0][]);
+        this.slots = slots.toArray(new String[0]);
+        this.names = Set.copyOf(slots);
+    }
+
+    private static boolean contains(byte[] bytes, byte[] target, int from, int to) {
+        outer:
+        for (int i = from; i <= to - target.length; i++) {
+            for (int j = 0; j < target.length; j++)
+                if (bytes[i + j] != target[j]) continue outer;
+            return true;
+        }
+        return false;
+    }
+
+    public Set<String> getSlots() {
+        return names;
+    }
+
+    /**
+     * Fills every slot with its value, serialized the same way the builder would have.
+     *
+     * @throws IllegalArgumentException if a slot has no value or a value has no slot
+     */
+    public Script bind(Map<String, ?> values) {
+        if (!values.keySet().equals(names)) {
+            Set<String> missing = new TreeSet<>(names);
+            missing.removeAll(values.keySet());
+            Set<String> unknown = new TreeSet<>(values.keySet());
+            unknown.removeAll(names);
+            throw new IllegalArgumentException("Template slots without a value: " + missing + ", values without a slot: " + unknown);
+        }
+
+        return new Script(callIDs, ScriptJson.splice(segments, slots, values), priority, cacheTtl, deadline, inputs);
+    }
+}
@@ -0,0 +1,8 @@
+package com.crow.locrowai.api.runtime.exceptions;
+
+public class AIBackendBusyException extends AIRuntimeException {
+    public AIBackendBusyException(String lane) {
+        super("The AI backend is at capacity and the " + lane + " queue is full. " +
+                "The script was rejected without being run; try again later.");
+    }
+}
@@ -0,0 +1,7 @@
+package com.crow.locrowai.api.runtime.exceptions;
+
+public class InvalidScriptException extends AIRuntimeException {
+    public InvalidScriptException(String reason) {
+        super("Invalid script: " + reason);
+    }
+}
@@ -0,0 +1,13 @@
+package com.crow.locrowai.api.runtime.exceptions;
+
+import java.time.Duration;
+
+public class ScriptTimeoutException extends AIRuntimeException {
+    public ScriptTimeoutException() {
+        super("The script did not finish within its deadline and was stopped.");
+    }
+
+    public ScriptTimeoutException(Duration deadline) {
+        super("The script did not finish within its " + deadline.toMillis() + "ms deadline and was stopped.");
+    }
+}
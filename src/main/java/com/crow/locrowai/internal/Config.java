@@ -1,13 +1,18 @@
 package com.crow.locrowai.internal;
 
+import com.crow.locrowai.internal.backend.StubBackend;
 import net.minecraftforge.common.ForgeConfigSpec;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.config.ModConfigEvent;
 import org.jetbrains.annotations.ApiStatus;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @ApiStatus.Internal
@@ -25,21 +30,179 @@ public class Config
             .comment("A list of player names to search for offloading the AI process to, in order of priority.")
             .defineListAllowEmpty("volunteerNames", List.of(), Config::validateNames);
 
+    public enum Transport {
+        TCP,
+        UNIX
+    }
+
+    private static final ForgeConfigSpec.EnumValue<Transport> BACKEND_TRANSPORT = BUILDER
+            .comment("How to reach the local AI backend. UNIX uses a socket file instead of a TCP port, which avoids port conflicts and is faster for large payloads. Windows always uses TCP.")
+            .defineEnum("backendTransport", Transport.TCP);
+
+    private static final ForgeConfigSpec.IntValue BACKEND_CONNECT_TIMEOUT = BUILDER
+            .comment("How many seconds to wait for a connection to the local AI backend before giving up.")
+            .defineInRange("backendConnectTimeout", 5, 1, 300);
+
+    private static final ForgeConfigSpec.IntValue BACKEND_REQUEST_TIMEOUT = BUILDER
+            .comment("How many seconds a single request to the local AI backend may take before it is abandoned.")
+            .defineInRange("backendRequestTimeout", 600, 1, 86400);
+
+    private static final ForgeConfigSpec.IntValue BACKEND_CLIENT_THREADS = BUILDER
+            .comment("How many threads handle responses from the local AI backend.")
+            .defineInRange("backendClientThreads", 4, 1, 64);
+
+    private static final ForgeConfigSpec.IntValue BACKEND_MAX_CONCURRENT = BUILDER
+            .comment("How many scripts the local AI backend may run at the same time. Further scripts wait in a queue.")
+            .defineInRange("backendMaxConcurrent", 4, 1, 256);
+
+    private static final ForgeConfigSpec.IntValue BACKEND_MAX_QUEUED = BUILDER
+            .comment("How many scripts may wait in each priority queue (interactive and background) before new ones are rejected.")
+            .defineInRange("backendMaxQueued", 64, 0, 65536);
+
+    private static final ForgeConfigSpec.ConfigValue<List<? extends String>> BACKEND_MOD_WEIGHTS = BUILDER
+            .comment("How large a share of the local AI backend each mod gets while several are waiting for it, as \"modid=weight\" entries. Mods not listed have a weight of 1.")
+            .defineListAllowEmpty("backendModWeights", List.of(), Config::validateModValue);
+
+    private static final ForgeConfigSpec.ConfigValue<List<? extends String>> BACKEND_MOD_MAX_CONCURRENT = BUILDER
+            .comment("How many scripts each mod may run on the local AI backend at the same time, as \"modid=count\" entries. Mods not listed are only limited by backendMaxConcurrent.")
+            .defineListAllowEmpty("backendModMaxConcurrent", List.of(), Config::validateModValue);
+
+    private static final ForgeConfigSpec.IntValue HEALTH_PROBE_INTERVAL = BUILDER
+            .comment("How many seconds apart the local AI backend's health is checked.")
+            .defineInRange("healthProbeInterval", 5, 1, 300);
+
+    private static final ForgeConfigSpec.IntValue HEALTH_FAILURE_THRESHOLD = BUILDER
+            .comment("How many backend requests in a row must fail before new scripts are rejected straight away, until a health check succeeds again.")
+            .defineInRange("healthFailureThreshold", 5, 1, 100);
+
+    private static final ForgeConfigSpec.IntValue RESULT_CACHE_SIZE = BUILDER
+            .comment("How many megabytes of results from cacheable scripts each mod may keep in memory. Set to 0 to disable the cache.")
+            .defineInRange("resultCacheSize", 32, 0, 4096);
+
+    private static final ForgeConfigSpec.IntValue SCRIPT_TIMEOUT = BUILDER
+            .comment("How many seconds a script without its own deadline may run before it is stopped. Set to 0 to let such scripts run indefinitely.")
+            .defineInRange("scriptTimeout", 300, 0, 86400);
+
+    private static final ForgeConfigSpec.IntValue OFFLOAD_EXPIRY = BUILDER
+            .comment("How many seconds an offloaded script, or a transfer of one, may go without any answer before it is given up on.")
+            .defineInRange("offloadExpiry", 600, 10, 86400);
+
+    private static final ForgeConfigSpec.IntValue OFFLOAD_MAX_OUTSTANDING = BUILDER
+            .comment("How many offloaded scripts, and how many partial transfers of them, may be waiting at once before new ones are rejected.")
+            .defineInRange("offloadMaxOutstanding", 256, 1, 65536);
+
+    private static final ForgeConfigSpec.IntValue OFFLOAD_MAX_TRANSFER_SIZE = BUILDER
+            .comment("How many megabytes of offloaded scripts and results may be held while their chunks are still arriving.")
+            .defineInRange("offloadMaxTransferSize", 64, 1, 1024);
+
+    private static final ForgeConfigSpec.IntValue SHARED_MEMORY_THRESHOLD = BUILDER
+            .comment("Byte inputs and binary results of at least this many kilobytes are handed to the local AI backend through memory-mapped files instead of being copied over the connection. Set to 0 to disable.")
+            .defineInRange("sharedMemoryThreshold", 0, 0, 1048576);
+
+    private static final ForgeConfigSpec.IntValue METRICS_PORT = BUILDER
+            .comment("Serve metrics in the Prometheus text format at http://127.0.0.1:<port>/metrics. Set to 0 to disable.")
+            .defineInRange("metricsPort", 0, 0, 65535);
+
+    private static final ForgeConfigSpec.BooleanValue BACKEND_STUB = BUILDER
+            .comment("Run a stub in place of the local AI backend, for load testing. Nothing needs to be installed and scripts return filler results after a simulated delay. Not for regular play.")
+            .define("backendStub", false);
+
+    private static final ForgeConfigSpec.IntValue STUB_LATENCY = BUILDER
+            .comment("How many milliseconds each script takes on the stub backend.")
+            .defineInRange("stubLatency", 200, 0, 600000);
+
+    private static final ForgeConfigSpec.EnumValue<StubBackend.Distribution> STUB_LATENCY_DISTRIBUTION = BUILDER
+            .comment("How script latency on the stub backend varies. FIXED always takes stubLatency, UNIFORM anywhere up to twice it, and LONG_TAIL usually close to it but occasionally many times longer.")
+            .defineEnum("stubLatencyDistribution", StubBackend.Distribution.FIXED);
+
+    private static final ForgeConfigSpec.IntValue STUB_PAYLOAD_SIZE = BUILDER
+            .comment("How many kilobytes of results each script returns on the stub backend.")
+            .defineInRange("stubPayloadSize", 4, 0, 65536);
+
+    private static final ForgeConfigSpec.IntValue STUB_ERROR_RATE = BUILDER
+            .comment("What percentage of scripts fail on the stub backend.")
+            .defineInRange("stubErrorRate", 0, 0, 100);
+
     public static final ForgeConfigSpec SPEC = BUILDER.build();
 
     public static boolean offloading;
     public static List<String> volunteerNames;
+    public static Transport backendTransport;
+    public static int backendConnectTimeout;
+    public static int backendRequestTimeout;
+    public static int backendClientThreads;
+    public static int backendMaxConcurrent;
+    public static int backendMaxQueued;
+    public static int healthProbeInterval;
+    public static int healthFailureThreshold;
+    public static Map<String, Integer> backendModWeights;
+    public static Map<String, Integer> backendModMaxConcurrent;
+    public static long resultCacheBytes;
+    public static int scriptTimeout;
+    public static int offloadExpiry;
+    public static int offloadMaxOutstanding;
+    public static long offloadMaxTransferBytes;
+    public static int sharedMemoryThreshold;
+    public static int metricsPort;
+    public static boolean backendStub;
+    public static StubBackend.Profile stubProfile;
 
     private static final Pattern MC_NAME = Pattern.compile("^[A-Za-z0-9_]{3,16}$");
     private static boolean validateNames(final Object obj) {
         return obj instanceof final String name && MC_NAME.matcher(name).matches();
     }
 
+    private static final Pattern MOD_VALUE = Pattern.compile("^([a-z0-9_.-]+)=([1-9][0-9]{0,4})$");
+    private static boolean validateModValue(final Object obj) {
+        return obj instanceof final String entry && MOD_VALUE.matcher(entry).matches();
+    }
+
+    private static Map<String, Integer> parseModValues(List<? extends String> entries) {
+        Map<String, Integer> values = new HashMap<>();
+        for (String entry : entries) {
+            Matcher matcher = MOD_VALUE.matcher(entry);
+            if (matcher.matches()) values.put(matcher.group(1), Integer.parseInt(matcher.group(2)));
+        }
+        return values;
+    }
+
+    public static int getModWeight(String modID) {
+        return backendModWeights == null ? 1 : backendModWeights.getOrDefault(modID, 1);
+    }
+
+    public static int getModMaxConcurrent(String modID) {
+        return backendModMaxConcurrent == null ? Integer.MAX_VALUE : backendModMaxConcurrent.getOrDefault(modID, Integer.MAX_VALUE);
+    }
+
     @SubscribeEvent
     static void onLoad(final ModConfigEvent event)
     {
         offloading = OFFLOADING.get();
         volunteerNames = new ArrayList<>(VOLUNTEERS.get());
+        backendTransport = BACKEND_TRANSPORT.get();
+        backendConnectTimeout = BACKEND_CONNECT_TIMEOUT.get();
+        backendRequestTimeout = BACKEND_REQUEST_TIMEOUT.get();
+        backendClientThreads = BACKEND_CLIENT_THREADS.get();
+        backendMaxConcurrent = BACKEND_MAX_CONCURRENT.get();
+        backendMaxQueued = BACKEND_MAX_QUEUED.get();
+        healthProbeInterval = HEALTH_PROBE_INTERVAL.get();
+        healthFailureThreshold = HEALTH_FAILURE_THRESHOLD.get();
+        backendModWeights = parseModValues(BACKEND_MOD_WEIGHTS.get());
+        backendModMaxConcurrent = parseModValues(BACKEND_MOD_MAX_CONCURRENT.get());
+        resultCacheBytes = RESULT_CACHE_SIZE.get() * 1024L * 1024L;
+        scriptTimeout = SCRIPT_TIMEOUT.get();
+        offloadExpiry = OFFLOAD_EXPIRY.get();
+        offloadMaxOutstanding = OFFLOAD_MAX_OUTSTANDING.get();
+        offloadMaxTransferBytes = OFFLOAD_MAX_TRANSFER_SIZE.get() * 1024L * 1024L;
+        sharedMemoryThreshold = SHARED_MEMORY_THRESHOLD.get();
+        metricsPort = METRICS_PORT.get();
+        backendStub = BACKEND_STUB.get();
+        stubProfile = new StubBackend.Profile(
+                Duration.ofMillis(STUB_LATENCY.get()),
+                STUB_LATENCY_DISTRIBUTION.get(),
+                STUB_PAYLOAD_SIZE.get() * 1024,
+                STUB_ERROR_RATE.get() / 100.0
+        );
     }
 
     public static void setOffloading(boolean option) {
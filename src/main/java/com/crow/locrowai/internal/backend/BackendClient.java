@@ -0,0 +1,175 @@
+package com.crow.locrowai.internal.backend;
+
+import com.crow.locrowai.internal.Config;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The single HTTP client every backend endpoint goes through. The client and its executor are created
+ * once and reused, so HTTP/1.1 connections to the backend stay alive between scripts.
+ */
+@ApiStatus.Internal
+public class BackendClient {
+
+    public static final String JOB_HEADER = "X-Locrow-Job";
+
+    private static final AtomicInteger threadId = new AtomicInteger(0);
+
+    private static HttpClient client;
+    private static ThreadPoolExecutor executor;
+    private static ThreadPoolExecutor decoder;
+
+    private static ThreadPoolExecutor pool(String name) {
+        int threads = Math.max(1, Config.backendClientThreads);
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    private static synchronized HttpClient client() {
+        if (client == null) {
+            executor = pool("Locrow-AI-Backend-Client-");
+            decoder = pool("Locrow-AI-Backend-Decoder-");
+
+            client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(Math.max(1, Config.backendConnectTimeout)))
+                    .executor(executor)
+                    .build();
+        }
+
+        return client;
+    }
+
+    public static Executor executor() {
+        client();
+        return executor;
+    }
+
+    /**
+     * Runs blocking reads of streamed response bodies. These must stay off {@link #executor()}, which the
+     * HTTP client itself needs in order to keep feeding those same streams.
+     */
+    public static Executor decoder() {
+        client();
+        return decoder;
+    }
+
+    public static URI uri(String endpoint) {
+        return URI.create("http://127.0.0.1:" + LoadManager.getPort() + endpoint);
+    }
+
+    public static <T> CompletableFuture<HttpResponse<T>> post(String endpoint, HttpRequest.BodyPublisher body,
+                                                              HttpResponse.BodyHandler<T> handler) {
+        return track(send(request(endpoint).POST(body).build(), handler));
+    }
+
+    /**
+     * Posts a script that runs as backend job {@code jobID}, so it can later be stopped with {@link #cancel(UUID)}.
+     */
+    public static <T> CompletableFuture<HttpResponse<T>> post(String endpoint, UUID jobID, byte[] json,
+                                                              HttpResponse.BodyHandler<T> handler) {
+        HttpRequest.Builder request = request(endpoint)
+                .header(JOB_HEADER, jobID.toString())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json));
+        if (SharedMemory.isEnabled())
+            request.header(SharedMemory.HEADER, Long.toString(SharedMemory.getThreshold()));
+
+        return track(send(request.build(), handler));
+    }
+
+    public static <T> CompletableFuture<HttpResponse<T>> post(String endpoint, String json,
+                                                              HttpResponse.BodyHandler<T> handler) {
+        return post(endpoint, HttpRequest.BodyPublishers.ofString(json), handler);
+    }
+
+    public static <T> CompletableFuture<HttpResponse<T>> post(String endpoint, byte[] json,
+                                                              HttpResponse.BodyHandler<T> handler) {
+        return post(endpoint, HttpRequest.BodyPublishers.ofByteArray(json), handler);
+    }
+
+    public static CompletableFuture<Boolean> cancel(UUID jobID) {
+        return post("/cancel", "{\"job_id\":\"" + jobID + "\"}", HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> response.statusCode() == 200)
+                .exceptionally(ex -> false);
+    }
+
+    /**
+     * Checks {@code /health}, without counting towards {@link BackendHealth}'s record of requests.
+     */
+    static CompletableFuture<Boolean> ping(Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri("/health"))
+                .timeout(timeout)
+                .GET()
+                .build();
+
+        return send(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> response.statusCode() == 200);
+    }
+
+    /**
+     * Reports each request's outcome to {@link BackendHealth}. Deadline responses (504) are the script's fault
+     * rather than the backend's, and cancelled requests say nothing about either.
+     */
+    private static <T> CompletableFuture<HttpResponse<T>> track(CompletableFuture<HttpResponse<T>> exchange) {
+        exchange.whenComplete((response, err) -> {
+            if (err == null)
+                BackendHealth.record(response.statusCode() < 500 || response.statusCode() == 504);
+            else if (!exchange.isCancelled())
+                BackendHealth.record(false);
+        });
+        return exchange;
+    }
+
+    private static <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        Path socket = LoadManager.getSocket();
+        if (socket != null)
+            return UnixSocketTransport.sendAsync(socket, request, handler, executor());
+
+        return client().sendAsync(request, handler);
+    }
+
+    private static HttpRequest.Builder request(String endpoint) {
+        return HttpRequest.newBuilder()
+                .uri(uri(endpoint))
+                .timeout(Duration.ofSeconds(Math.max(1, Config.backendRequestTimeout)))
+                .header("Content-Type", "application/json");
+    }
+
+    /**
+     * Drops the pooled client so the next request reconnects, e.g. after the backend process was restarted.
+     */
+    static synchronized void reset() {
+        if (executor != null) executor.shutdown();
+        if (decoder != null) decoder.shutdown();
+
+        client = null;
+        executor = null;
+        decoder = null;
+    }
+}
@@ -0,0 +1,218 @@
+package com.crow.locrowai.internal.backend;
+
+import com.crow.locrowai.api.runtime.Script;
+import com.crow.locrowai.api.runtime.exceptions.AIBackendBusyException;
+import com.crow.locrowai.api.runtime.exceptions.AIBackendException;
+import com.crow.locrowai.internal.Config;
+import com.crow.locrowai.internal.runtime.Cancellation;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the local backend, which every mod shares. At most {@code backendMaxConcurrent}
+ * requests are in flight; the rest wait in a bounded queue per mod and priority lane. Interactive work is always
+ * started before background work, and within a lane mods take turns in proportion to their configured weight,
+ * so one mod's bulk jobs cannot starve another's. When a queue is full, new scripts are rejected straight away
+ * instead of adding to everyone's latency.
+ */
+@ApiStatus.Internal
+public class BackendDispatcher {
+
+    private static class Tenant {
+        final String modID;
+        final Map<Script.Priority, ArrayDeque<Queued>> lanes = new EnumMap<>(Script.Priority.class);
+        int running = 0;
+        // How much service the mod has had, scaled by its weight. The lowest pass goes next.
+        double pass = 0;
+
+        Tenant(String modID) {
+            this.modID = modID;
+            for (Script.Priority priority : Script.Priority.values())
+                lanes.put(priority, new ArrayDeque<>());
+        }
+
+        boolean isIdle() {
+            return running == 0 && lanes.values().stream().allMatch(ArrayDeque::isEmpty);
+        }
+
+        boolean canStart() {
+            return running < Config.getModMaxConcurrent(modID);
+        }
+    }
+
+    /**
+     * A script waiting for a slot, with the future to fail if it can no longer be started.
+     */
+    private static class Queued {
+        final Tenant tenant;
+        final Runnable start;
+        final CompletableFuture<?> future;
+
+        Queued(Tenant tenant, Runnable start, CompletableFuture<?> future) {
+            this.tenant = tenant;
+            this.start = start;
+            this.future = future;
+        }
+    }
+
+    private static final Map<String, Tenant> tenants = new HashMap<>();
+    private static int running = 0;
+    private static double virtualTime = 0;
+
+    public static <T> CompletableFuture<T> submit(String modID, Script.Priority priority, Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Queued start;
+
+        // Nothing is queued for a backend that is known to be down.
+        if (!BackendHealth.isAvailable()) {
+            future.completeExceptionally(BackendHealth.unavailable());
+            return future;
+        }
+
+        synchronized (tenants) {
+            Tenant tenant = tenants.computeIfAbsent(modID, Tenant::new);
+            // A mod that was idle does not get to bank turns it never asked for.
+            if (tenant.isIdle()) tenant.pass = Math.max(tenant.pass, virtualTime);
+
+            ArrayDeque<Queued> lane = tenant.lanes.get(priority);
+            start = new Queued(tenant, () -> start(tenant, task, future), future);
+
+            if (running < Math.max(1, Config.backendMaxConcurrent) && tenant.canStart()) {
+                claim(tenant);
+            } else {
+                if (lane.size() >= Config.backendMaxQueued) {
+                    future.completeExceptionally(new AIBackendBusyException(priority.name().toLowerCase(Locale.ROOT)));
+                } else {
+                    lane.add(start);
+                    Cancellation.onCancel(future, () -> {
+                        synchronized (tenants) {
+                            lane.remove(start);
+                        }
+                    });
+                }
+                return future;
+            }
+        }
+
+        start.start.run();
+        return future;
+    }
+
+    private static <T> void start(Tenant tenant, Supplier<CompletableFuture<T>> task, CompletableFuture<T> future) {
+        CompletableFuture<T> started;
+        try {
+            if (!BackendHealth.isAvailable()) throw BackendHealth.unavailable();
+            started = task.get();
+        } catch (Throwable e) {
+            release(tenant);
+            future.completeExceptionally(e);
+            return;
+        }
+
+        Cancellation.onCancel(future, () -> started.cancel(true));
+
+        started.whenComplete((result, err) -> {
+            release(tenant);
+            if (err == null)
+                future.complete(result);
+            else
+                future.completeExceptionally(err);
+        });
+    }
+
+    private static void claim(Tenant tenant) {
+        running++;
+        tenant.running++;
+        tenant.pass += 1.0 / Config.getModWeight(tenant.modID);
+        virtualTime = Math.max(virtualTime, tenant.pass);
+    }
+
+    /**
+     * The next script to start, from the most urgent lane that has any, and from the mod with the lowest pass
+     * among those still under their concurrency cap. The slot is claimed for it.
+     */
+    private static Queued next() {
+        for (Script.Priority priority : Script.Priority.values()) {
+            Tenant best = null;
+            for (Tenant tenant : tenants.values()) {
+                if (tenant.lanes.get(priority).isEmpty() || !tenant.canStart()) continue;
+                if (best == null || tenant.pass < best.pass) best = tenant;
+            }
+
+            if (best != null) {
+                claim(best);
+                return best.lanes.get(priority).poll();
+            }
+        }
+
+        return null;
+    }
+
+    public static int getRunning() {
+        synchronized (tenants) {
+            return running;
+        }
+    }
+
+    public static int getQueued(Script.Priority priority) {
+        synchronized (tenants) {
+            return tenants.values().stream().mapToInt(tenant -> tenant.lanes.get(priority).size()).sum();
+        }
+    }
+
+    public static int getRunning(String modID) {
+        synchronized (tenants) {
+            Tenant tenant = tenants.get(modID);
+            return tenant == null ? 0 : tenant.running;
+        }
+    }
+
+    public static int getQueued(String modID) {
+        synchronized (tenants) {
+            Tenant tenant = tenants.get(modID);
+            return tenant == null ? 0 : tenant.lanes.values().stream().mapToInt(ArrayDeque::size).sum();
+        }
+    }
+
+    /**
+     * How many scripts each mod has waiting, across both lanes.
+     */
+    public static Map<String, Integer> getQueueDepths() {
+        synchronized (tenants) {
+            Map<String, Integer> depths = new TreeMap<>();
+            for (Tenant tenant : tenants.values())
+                depths.put(tenant.modID, tenant.lanes.values().stream().mapToInt(ArrayDeque::size).sum());
+            return depths;
+        }
+    }
+
+    private static void release(Tenant tenant) {
+        List<Queued> next = new ArrayList<>();
+
+        synchronized (tenants) {
+            running--;
+            tenant.running--;
+
+            // Freeing one of this mod's slots may also unblock a mod that was waiting on its own cap, so fill
+            // every global slot that can be filled.
+            Queued start;
+            while (running < Math.max(1, Config.backendMaxConcurrent) && (start = next()) != null)
+                next.add(start);
+        }
+
+        // Freed slots are handed straight to the next scripts, off the thread that completed the last one.
+        for (Queued start : next) {
+            try {
+                BackendClient.executor().execute(start.start);
+            } catch (RejectedExecutionException e) {
+                // The client was reset between taking its executor and handing it the script.
+                release(start.tenant);
+                start.future.completeExceptionally(new AIBackendException("The backend client was reset before the script started."));
+            }
+        }
+    }
+}
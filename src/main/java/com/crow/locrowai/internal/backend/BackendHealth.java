@@ -0,0 +1,142 @@
+package com.crow.locrowai.internal.backend;
+
+import com.crow.locrowai.api.runtime.BackendStatus;
+import com.crow.locrowai.api.runtime.exceptions.AIBackendException;
+import com.crow.locrowai.internal.Config;
+import com.crow.locrowai.internal.LocrowAI;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker in front of the local backend. Every backend request reports how it went, and a background
+ * prober checks {@code /health} on an interval. After {@code healthFailureThreshold} failures in a row, or as soon
+ * as the process is gone, the circuit opens and new scripts fail at once instead of queueing for a backend that
+ * cannot answer them. Only a successful probe closes it again.
+ */
+@ApiStatus.Internal
+public class BackendHealth {
+
+    private static final int WINDOW = 50;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(2);
+
+    private static final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Locrow-AI-Backend-Health");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static ScheduledFuture<?> probing;
+
+    private static BackendStatus.State state = BackendStatus.State.OPEN;
+    private static final boolean[] outcomes = new boolean[WINDOW];
+    private static int recorded = 0;
+    private static int consecutiveFailures = 0;
+    private static double latency = -1;
+
+    /**
+     * Starts probing a freshly launched backend. The circuit stays open until the first probe succeeds.
+     */
+    static synchronized void start() {
+        stop();
+
+        recorded = 0;
+        consecutiveFailures = 0;
+        latency = -1;
+
+        long interval = Math.max(1, Config.healthProbeInterval);
+        probing = prober.scheduleWithFixedDelay(BackendHealth::probe, interval, interval, TimeUnit.SECONDS);
+    }
+
+    static synchronized void stop() {
+        if (probing != null) probing.cancel(false);
+        probing = null;
+        state = BackendStatus.State.OPEN;
+    }
+
+    /**
+     * Probes right away instead of waiting for the next interval, e.g. once the backend reports it is listening.
+     */
+    static void probeNow() {
+        prober.execute(BackendHealth::probe);
+    }
+
+    private static void probe() {
+        if (!LoadManager.isRunning()) {
+            trip("the backend process is not running");
+            return;
+        }
+
+        synchronized (BackendHealth.class) {
+            if (state == BackendStatus.State.OPEN) state = BackendStatus.State.HALF_OPEN;
+        }
+
+        long start = System.nanoTime();
+        BackendClient.ping(PROBE_TIMEOUT).whenComplete((healthy, err) -> {
+            if (err == null && healthy)
+                recover((System.nanoTime() - start) / 1_000_000.0);
+            else
+                fail();
+        });
+    }
+
+    static synchronized void recover(double millis) {
+        latency = latency < 0 ? millis : latency + LATENCY_SMOOTHING * (millis - latency);
+        consecutiveFailures = 0;
+
+        if (state != BackendStatus.State.CLOSED) {
+            state = BackendStatus.State.CLOSED;
+            LocrowAI.LOGGER().info("AI backend is healthy, accepting scripts.");
+        }
+    }
+
+    private static synchronized void fail() {
+        consecutiveFailures++;
+
+        if (state == BackendStatus.State.HALF_OPEN)
+            state = BackendStatus.State.OPEN;
+        else if (state == BackendStatus.State.CLOSED && consecutiveFailures >= Config.healthFailureThreshold)
+            trip(consecutiveFailures + " requests failed in a row");
+    }
+
+    private static synchronized void trip(String reason) {
+        if (state == BackendStatus.State.CLOSED)
+            LocrowAI.LOGGER().warn("AI backend is unhealthy ({}), rejecting scripts until it recovers.", reason);
+        state = BackendStatus.State.OPEN;
+    }
+
+    /**
+     * Records how a backend request went. Cancelled requests should not be recorded.
+     */
+    static synchronized void record(boolean success) {
+        outcomes[recorded++ % WINDOW] = success;
+
+        if (success)
+            consecutiveFailures = 0;
+        else
+            fail();
+    }
+
+    public static synchronized boolean isAvailable() {
+        return state == BackendStatus.State.CLOSED;
+    }
+
+    public static AIBackendException unavailable() {
+        return new AIBackendException("The AI backend is unavailable (circuit "
+                + getStatus().state().name().toLowerCase(Locale.ROOT) + "). Scripts are rejected until it recovers.");
+    }
+
+    public static synchronized BackendStatus getStatus() {
+        int window = Math.min(recorded, WINDOW);
+        int failures = 0;
+        for (int i = 0; i < window; i++)
+            if (!outcomes[i]) failures++;
+
+        return new BackendStatus(state, latency, window == 0 ? 0 : (double) failures / window, consecutiveFailures);
+    }
+}
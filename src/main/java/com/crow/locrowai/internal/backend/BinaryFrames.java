@@ -0,0 +1,65 @@
+package com.crow.locrowai.internal.backend;
+
+import com.crow.locrowai.api.runtime.BinaryResults;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the length-prefixed framing written by the backend's /run_binary endpoint:
+ * <pre>
+ * u32 json length, json results,
+ * then per attachment: u16 name length, name, u32 data length, data
+ * </pre>
+ * All integers are big-endian and attachments follow one another until the end of the stream. Attachments the
+ * backend put in shared memory arrive as handles inside the JSON instead and are mapped here.
+ */
+@ApiStatus.Internal
+public class BinaryFrames {
+
+    public static BinaryResults read(InputStream stream) {
+        try (DataInputStream in = new DataInputStream(stream)) {
+            JsonObject results = JsonParser.parseString(
+                    new String(readFully(in, in.readInt()), StandardCharsets.UTF_8)
+            ).getAsJsonObject();
+
+            Map<String, ByteBuffer> attachments = new HashMap<>();
+            for (String name : List.copyOf(results.keySet())) {
+                if (results.get(name).isJsonObject() && SharedMemory.isHandle(results.getAsJsonObject(name)))
+                    attachments.put(name, SharedMemory.read(results.remove(name).getAsJsonObject()));
+            }
+
+            while (true) {
+                int nameLength = in.read();
+                if (nameLength == -1) break;
+                nameLength = (nameLength << 8) | in.readUnsignedByte();
+
+                String name = new String(readFully(in, nameLength), StandardCharsets.UTF_8);
+                attachments.put(name, ByteBuffer.wrap(readFully(in, in.readInt())));
+            }
+
+            return new BinaryResults(results, attachments);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] readFully(DataInputStream in, int length) throws IOException {
+        if (length < 0) throw new IOException("Frame of " + Integer.toUnsignedString(length) + " bytes is too large.");
+
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) throw new EOFException("Backend response ended mid-frame.");
+        return bytes;
+    }
+}
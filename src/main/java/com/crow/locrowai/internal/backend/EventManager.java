@@ -3,6 +3,7 @@ package com.crow.locrowai.internal.backend;
 import com.crow.locrowai.api.registration.AIRegistry;
 import com.crow.locrowai.internal.Config;
 import com.crow.locrowai.internal.LocrowAI;
+import com.crow.locrowai.internal.metrics.PrometheusExporter;
 import net.minecraft.client.Minecraft;
 
 import net.minecraftforge.api.distmarker.Dist;
@@ -30,31 +31,33 @@ class EventManager {
         static void init(FMLCommonSetupEvent event) {
 
             AIRegistry.init();
+            PrometheusExporter.start();
 
             if (Config.offloading) return;
 
-            if (!InstallationManager.isFullyInstalled())
+            if (Config.backendStub)
+                LoadManager.load();
+            else if (!InstallationManager.isFullyInstalled())
                 InstallationManager.init();
             else {
                 Thread thread = new Thread(() -> {
                     try {
                         InstallationManager.installing.set(true);
-                        InstallationManager.currentStageIndex.set(4);
-                        InstallationManager.stagePercent.set(0);
+                        InstallationManager.enterStage(4);
                         if (!EnvironmentInstaller.verify()) {
                             InstallationManager.hadError.set(true);
                             LocrowAI.LOGGER().error("Failed to verify backend core. Files may have been tampered with!");
                             DistExecutor.safeRunWhenOn(Dist.CLIENT, LoadManager::showTamperWarning);
                             return;
                         }
-                        InstallationManager.currentStageIndex.set(5);
-                        InstallationManager.stagePercent.set(0);
+                        InstallationManager.enterStage(5);
                         if (!ExtensionInstaller.verify()) {
                             InstallationManager.hadError.set(true);
                             LocrowAI.LOGGER().error("Failed to verify AI extensions. Files may have been tampered with!");
                             DistExecutor.safeRunWhenOn(Dist.CLIENT, LoadManager::showTamperWarning);
                             return;
                         }
+                        InstallationManager.enterStage(InstallationManager.STAGES.size() - 1);
                         InstallationManager.installing.set(false);
                         LoadManager.load();
                     } catch (IOException e) {
@@ -1,7 +1,10 @@
 package com.crow.locrowai.internal.backend;
 
 import com.crow.locrowai.api.registration.PackageManifest;
+import com.crow.locrowai.internal.Config;
 import com.crow.locrowai.internal.LocrowAI;
+import com.crow.locrowai.internal.metrics.Metrics;
+import com.crow.locrowai.internal.metrics.events.InstallStageEvent;
 import com.crow.locrowai.api.registration.AIExtension;
 import com.crow.locrowai.api.registration.AIRegistry;
 import com.crow.locrowai.api.registration.exceptions.UnsupportedRequirementException;
@@ -61,6 +64,8 @@ public class InstallationManager {
     public static final AtomicBoolean installing = new AtomicBoolean(false);
     public static final AtomicBoolean hadError = new AtomicBoolean(false);
     public static final AtomicReference<String> subLabel = new AtomicReference<>("");
+    private static long stageStarted = 0;
+    private static InstallStageEvent stageEvent;
 
     private static final Gson gson = new Gson();
 
@@ -148,6 +153,8 @@ public class InstallationManager {
     }
 
     public static boolean isFullyInstalled() {
+        if (Config.backendStub) return true;
+
         try {
             for (AIExtension extension : AIRegistry.getExtensions()) {
                 if (!extension.installed()) return false;
@@ -248,8 +255,7 @@ public class InstallationManager {
 
         installing.set(true);
         hadError.set(false);
-        currentStageIndex.set(0);
-        stagePercent.set(0);
+        enterStage(0);
         if (!EnvironmentInstaller.installed()) {
 
             if (backend.toFile().exists()) {
@@ -263,8 +269,7 @@ public class InstallationManager {
             if (hadError.get()) return;
             logMessage("Downloaded Python environment.");
 
-            currentStageIndex.set(1);
-            stagePercent.set(0);
+            enterStage(1);
 
             logMessage("Installing Python environment...");
             EnvironmentInstaller.install();
@@ -272,8 +277,7 @@ public class InstallationManager {
             logMessage("Installed Python environment.");
         }
 
-        currentStageIndex.set(2);
-        stagePercent.set(0);
+        enterStage(2);
 
         Path ePath = backend.resolve("extensions");
 
@@ -297,15 +301,13 @@ public class InstallationManager {
         if (hadError.get()) return;
         logMessage("Installed " + AIRegistry.getExtensions().size() + " extensions.");
 
-        currentStageIndex.set(3);
-        stagePercent.set(0);
+        enterStage(3);
         List<PackageManifest.ModelCard> modelCards = AIRegistry.getModels();
         logMessage("Fetching " + modelCards.size() + " models...");
         ModelFetcher.fetch(modelCards);
         logMessage("Fetched " + modelCards.size() + " models.");
 
-        currentStageIndex.set(4);
-        stagePercent.set(0);
+        enterStage(4);
         logMessage("Verifying AI backend files...");
         logMessage("Verifying core backend files...");
         if (!EnvironmentInstaller.verify()) {
@@ -313,8 +315,7 @@ public class InstallationManager {
             return;
         }
         logMessage("Verified core backend files.");
-        currentStageIndex.set(5);
-        stagePercent.set(0);
+        enterStage(5);
 
         logMessage("Verifying extension files...");
         if (!ExtensionInstaller.verify()) {
@@ -322,8 +323,7 @@ public class InstallationManager {
             return;
         }
         logMessage("Verified extension files.");
-        currentStageIndex.set(6);
-        stagePercent.set(0);
+        enterStage(6);
 
         logMessage("Running backend test...");
         ProcessBuilder builder = SystemProbe.buildScriptProcess(backend, "python", "app.py", "--warmup");
@@ -343,13 +343,32 @@ public class InstallationManager {
         }
         logMessage("Verified AI backend files.");
 
-        currentStageIndex.set(7);
-        stagePercent.set(0);
+        enterStage(7);
 
         installing.set(false);
         logMessage("AI backend install complete!");
     }
 
+    /**
+     * Moves on to stage {@code index}, recording how long the stage before it took.
+     */
+    static synchronized void enterStage(int index) {
+        long now = System.nanoTime();
+        int previous = currentStageIndex.get();
+        if (index > previous && stageStarted != 0) {
+            Metrics.installStage(STAGES.get(previous).name(), now - stageStarted);
+            stageEvent.commit();
+        }
+
+        currentStageIndex.set(index);
+        stagePercent.set(0);
+        stageStarted = index == STAGES.size() - 1 ? 0 : now;
+
+        stageEvent = new InstallStageEvent();
+        stageEvent.stage = STAGES.get(index).name();
+        stageEvent.begin();
+    }
+
     // computed from STAGES weights
     private static double totalWeight() {
         return STAGES.stream().mapToDouble(Stage::weight).sum();
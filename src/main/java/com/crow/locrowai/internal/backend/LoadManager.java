@@ -1,6 +1,7 @@
 package com.crow.locrowai.internal.backend;
 
 import com.crow.locrowai.internal.AIBackendManagerScreen;
+import com.crow.locrowai.internal.Config;
 import com.crow.locrowai.internal.LocrowAI;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.components.toasts.SystemToast;
@@ -12,11 +13,9 @@ import net.minecraft.network.chat.TextColor;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.fml.DistExecutor;
 import org.jetbrains.annotations.ApiStatus;
+import oshi.software.os.OSProcess;
 
 import java.io.*;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -27,16 +26,23 @@ import java.time.temporal.ChronoUnit;
 import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @ApiStatus.Internal
 public class LoadManager {
 
+    public record ProcessUsage(long residentBytes, long virtualBytes, double cpuSeconds, int threads) {}
+
     private static final Pattern pattern = Pattern.compile("https?://[^:/]+:(\\d+)");
 
     private static boolean hooked = false;
     private static Process process;
     private static Thread stdoutThread;
     private static int port = 8000;
+    private static Path socket;
+
+    // sun_path is 108 bytes on Linux and 104 on macOS, including the terminating null.
+    private static final int MAX_SOCKET_PATH = 103;
 
     private static BufferedWriter logger;
 
@@ -82,12 +88,22 @@ public class LoadManager {
             logMessage("Could not create a log file! Runtime output will not be logged!");
         }
 
+        if (Config.backendStub) {
+            loadStub();
+            return;
+        }
+
         try {
 
             ProcessBuilder builder = SystemProbe.buildScriptProcess(InstallationManager.getBackendPath(), "run");
 
             builder.redirectErrorStream(true);
 
+            socket = null;
+            if (Config.backendTransport == Config.Transport.UNIX) useUnixSocket(builder);
+
+            SharedMemory.clear();
+
             process = builder.start();
 
             stdoutThread = new Thread(() -> {
@@ -100,8 +116,8 @@ public class LoadManager {
                         logMessage(line);
                         if (line.contains("Uvicorn running on")) {
                             Matcher matcher = pattern.matcher(line);
-                            matcher.find();
-                            port = Integer.parseInt(matcher.group(1));
+                            if (matcher.find()) port = Integer.parseInt(matcher.group(1));
+                            BackendHealth.probeNow();
 
                             DistExecutor.safeRunWhenOn(Dist.CLIENT, LoadManager::warmToast);
                         }
@@ -112,6 +128,7 @@ public class LoadManager {
             }, "Locrow-AI-Backend-Output");
 
             stdoutThread.start();
+            BackendHealth.start();
 
             DistExecutor.safeRunWhenOn(Dist.CLIENT, LoadManager::coldToast);
 
@@ -127,15 +144,75 @@ public class LoadManager {
         }
     }
 
+    private static void loadStub() {
+        try {
+            socket = null;
+            port = StubBackend.start(Config.stubProfile);
+            logMessage("Stub backend running on http://127.0.0.1:" + port + " with " + Config.stubProfile);
+
+            BackendHealth.start();
+            BackendHealth.probeNow();
+
+            if (!hooked) {
+                Runtime.getRuntime().addShutdownHook(new Thread(LoadManager::kill));
+                hooked = true;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            logMessage("Could not start the stub backend.");
+            kill();
+        }
+    }
+
+    /**
+     * Has uvicorn listen on a socket file under the root path instead of a TCP port. Falls back to TCP where
+     * that is not possible.
+     */
+    private static void useUnixSocket(ProcessBuilder builder) {
+        if (SystemProbe.osKey(SystemProbe.result.os()).equals("windows")) {
+            logMessage("Unix domain sockets are not supported on Windows, using TCP instead.");
+            return;
+        }
+
+        Path path = InstallationManager.getRootPath().resolve("backend.sock").toAbsolutePath();
+        if (path.toString().getBytes(StandardCharsets.UTF_8).length > MAX_SOCKET_PATH) {
+            logMessage("The backend socket path " + path + " is too long for a Unix domain socket, using TCP instead.");
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logMessage("Could not remove the stale backend socket " + path + ", using TCP instead.");
+            return;
+        }
+
+        // uvicorn reads its options from UVICORN_* variables, and a socket takes precedence over --host/--port.
+        builder.environment().put("UVICORN_UDS", path.toString());
+        socket = path;
+    }
+
     static void kill() {
+        StubBackend.stop();
+
         if (process != null) {
             process.descendants().forEach(ProcessHandle::destroy);
             process.destroy();
         }
 
+        if (socket != null) {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException ignored) {}
+            socket = null;
+        }
+
         if (stdoutThread != null) {
             stdoutThread.interrupt();
         }
+
+        BackendHealth.stop();
+        BackendClient.reset();
         try {
             logger.close();
         } catch (IOException e) {
@@ -144,47 +221,20 @@ public class LoadManager {
     }
 
     static CompletableFuture<Boolean> warmup() {
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("http://127.0.0.1:" + LoadManager.getPort() + "/warmup"))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString("{}"))
-                .build();
-
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
-
-        client.sendAsync(
-                request,
-                HttpResponse.BodyHandlers.ofString()
-        ).thenAccept(response -> {
-            future.complete(response.statusCode() == 200);
-        }).exceptionally(ex -> {
-            future.complete(false);
-            return null;
-        });
-
-        return future;
+        return post("/warmup");
     }
 
     static CompletableFuture<Boolean> freeze() {
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("http://127.0.0.1:" + LoadManager.getPort() + "/freeze"))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString("{}"))
-                .build();
+        return post("/freeze");
+    }
 
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
+    private static CompletableFuture<Boolean> post(String endpoint) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
 
-        client.sendAsync(
-                request,
-                HttpResponse.BodyHandlers.ofString()
+        BackendClient.post(
+                endpoint,
+                "{}",
+                HttpResponse.BodyHandlers.discarding()
         ).thenAccept(response -> {
             future.complete(response.statusCode() == 200);
         }).exceptionally(ex -> {
@@ -277,7 +327,36 @@ public class LoadManager {
         return port;
     }
 
+    /**
+     * The socket file the backend listens on, or null when it is reached over TCP.
+     */
+    public static Path getSocket() {
+        return socket;
+    }
+
+    /**
+     * Memory and CPU time used by the backend and every process it started, or null if it is not running.
+     */
+    public static ProcessUsage getUsage() {
+        Process current = process;
+        if (current == null || !current.isAlive()) return null;
+
+        long resident = 0, virtual = 0, cpuMillis = 0;
+        int threads = 0;
+        for (ProcessHandle handle : Stream.concat(Stream.of(current.toHandle()), current.descendants()).toList()) {
+            OSProcess info = SystemProbe.si.getOperatingSystem().getProcess((int) handle.pid());
+            if (info == null) continue;
+
+            resident += info.getResidentSetSize();
+            virtual += info.getVirtualSize();
+            cpuMillis += info.getUserTime() + info.getKernelTime();
+            threads += info.getThreadCount();
+        }
+
+        return new ProcessUsage(resident, virtual, cpuMillis / 1000.0, threads);
+    }
+
     public static boolean isRunning() {
-        return process.isAlive();
+        return StubBackend.isRunning() || (process != null && process.isAlive());
     }
 }
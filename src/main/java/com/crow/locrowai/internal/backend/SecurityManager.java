@@ -2,6 +2,8 @@ package com.crow.locrowai.internal.backend;
 
 import com.crow.locrowai.api.registration.exceptions.MissingSecurityKeyException;
 import com.crow.locrowai.internal.LocrowAI;
+import com.crow.locrowai.internal.metrics.Metrics;
+import com.crow.locrowai.internal.metrics.events.HashVerificationEvent;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.io.IOException;
@@ -75,10 +77,23 @@ public class SecurityManager {
 
     static boolean verifyHash(Path path, String hash) throws IOException {
         try {
+            HashVerificationEvent event = new HashVerificationEvent();
+            event.begin();
+            long start = System.nanoTime();
             byte[] fBytes = Files.readAllBytes(path);
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hBytes = digest.digest(fBytes);
-            return hash.equalsIgnoreCase(HexFormat.of().formatHex(hBytes));
+            boolean matched = hash.equalsIgnoreCase(HexFormat.of().formatHex(hBytes));
+            Metrics.hashVerified(fBytes.length, System.nanoTime() - start);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.path = path.toString();
+                event.bytes = fBytes.length;
+                event.matched = matched;
+                event.commit();
+            }
+            return matched;
         } catch (NoSuchAlgorithmException e) {
             return false;
         }
@@ -0,0 +1,127 @@
+package com.crow.locrowai.internal.backend;
+
+import com.crow.locrowai.internal.Config;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Hands large byte payloads to and from the local backend through memory-mapped files in a scratch directory,
+ * so only a small {@code {"$shm": {"path", "offset", "length"}}} handle travels in the JSON.
+ */
+@ApiStatus.Internal
+public class SharedMemory {
+
+    public static final String HANDLE = "$shm";
+    public static final String HEADER = "X-Locrow-Shm";
+
+    public static Path getPath() {
+        return InstallationManager.getBackendPath().resolve("shm");
+    }
+
+    public static boolean isEnabled() {
+        return Config.sharedMemoryThreshold > 0 && !Config.offloading;
+    }
+
+    public static long getThreshold() {
+        return Config.sharedMemoryThreshold * 1024L;
+    }
+
+    /**
+     * Encodes {@code data} for the blueprint: a shared memory handle when it is large enough and the backend is
+     * local, otherwise base64. Any file written is added to {@code created}, to be released once the script is done.
+     */
+    public static JsonObject encode(ByteBuffer data, List<Path> created) {
+        JsonObject encoded = new JsonObject();
+
+        if (isEnabled() && data.remaining() >= getThreshold()) {
+            Path file = write(data);
+            created.add(file);
+
+            JsonObject handle = new JsonObject();
+            handle.addProperty("path", file.getFileName().toString());
+            handle.addProperty("offset", 0);
+            handle.addProperty("length", data.remaining());
+            encoded.add(HANDLE, handle);
+        } else {
+            ByteBuffer copy = data.duplicate();
+            byte[] bytes = new byte[copy.remaining()];
+            copy.get(bytes);
+            encoded.addProperty("$base64", Base64.getEncoder().encodeToString(bytes));
+        }
+
+        return encoded;
+    }
+
+    private static Path write(ByteBuffer data) {
+        try {
+            Files.createDirectories(getPath());
+            Path file = getPath().resolve(UUID.randomUUID() + ".bin");
+
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, data.remaining()).put(data.duplicate());
+            }
+
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static boolean isHandle(JsonObject object) {
+        return object.has(HANDLE) && object.get(HANDLE).isJsonObject();
+    }
+
+    /**
+     * Maps the bytes behind a handle written by the backend. The file is removed right away; the mapping stays
+     * valid on its own wherever the OS allows that, and anything left over is swept on the next start.
+     */
+    public static ByteBuffer read(JsonObject handle) {
+        JsonObject shm = handle.getAsJsonObject(HANDLE);
+
+        Path dir = getPath().toAbsolutePath().normalize();
+        Path file = dir.resolve(shm.get("path").getAsString()).normalize();
+        if (!dir.equals(file.getParent()))
+            throw new IllegalArgumentException("Shared memory handle points outside of " + dir);
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, shm.get("offset").getAsLong(), shm.get("length").getAsLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        release(file);
+        return buffer;
+    }
+
+    public static void release(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Removes everything left in the scratch directory, e.g. by a backend that was killed mid-script.
+     */
+    static void clear() {
+        if (!Files.isDirectory(getPath())) return;
+
+        try (Stream<Path> files = Files.list(getPath())) {
+            files.forEach(SharedMemory::release);
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,443 @@
+package com.crow.locrowai.internal.backend;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands in for the Python backend when load testing the Java side. It speaks the same HTTP protocol, so
+ * AIContext, the dispatcher and offloading all run unchanged. Scripts do no work: each one waits for a latency
+ * drawn from its {@link Profile} and returns filler results of the configured size.
+ * <p>
+ * It runs in-process when {@code backendStub} is enabled, or on its own through {@link #main(String[])} for CI:
+ * <pre>
+ * java -cp &lt;mod jar&gt;:&lt;gson jar&gt; com.crow.locrowai.internal.backend.StubBackend \
+ *     --port 8000 --latency-ms 200 --distribution LONG_TAIL --payload-bytes 4096 --error-rate 0.01
+ * </pre>
+ */
+@ApiStatus.Internal
+public class StubBackend {
+
+    public enum Distribution {
+        /** Every script takes exactly the configured latency. */
+        FIXED,
+        /** Anywhere from none to twice the configured latency. */
+        UNIFORM,
+        /** Log-normal around the configured latency as the median, so a few scripts take many times longer. */
+        LONG_TAIL
+    }
+
+    /**
+     * @param latency      how long a script takes, before {@code distribution} is applied
+     * @param payloadBytes how large each script's results are, split across its returns
+     * @param errorRate    share of scripts, from 0 to 1, that fail with HTTP 500
+     */
+    public record Profile(Duration latency, Distribution distribution, int payloadBytes, double errorRate) {}
+
+    private static final int MAX_BATCH_WORKERS = 8;
+    private static final AtomicInteger threadId = new AtomicInteger(0);
+
+    private static HttpServer server;
+    private static ExecutorService executor;
+
+    private final Profile profile;
+    private final Map<String, Thread> jobs = new ConcurrentHashMap<>();
+    private final Map<String, JsonObject> prepared = new ConcurrentHashMap<>();
+
+    private StubBackend(Profile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Starts the in-process stub on a free port on loopback and returns that port.
+     */
+    static synchronized int start(Profile profile) throws IOException {
+        stop();
+
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Locrow-AI-Stub-Backend-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = serve(0, profile, executor);
+
+        return server.getAddress().getPort();
+    }
+
+    static synchronized void stop() {
+        if (server == null) return;
+
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    static synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    private static HttpServer serve(int port, Profile profile, Executor executor) throws IOException {
+        StubBackend stub = new StubBackend(profile);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/run", exchange -> stub.handle(exchange, stub::run));
+        server.createContext("/run_binary", exchange -> stub.handle(exchange, stub::runBinary));
+        server.createContext("/run_stream", exchange -> stub.handle(exchange, stub::runStream));
+        server.createContext("/run_batch", exchange -> stub.handle(exchange, stub::runBatch));
+        server.createContext("/prepare", exchange -> stub.handle(exchange, stub::prepare));
+        server.createContext("/run_prepared/", exchange -> stub.handle(exchange, stub::runPrepared));
+        server.createContext("/cancel", exchange -> stub.handle(exchange, stub::cancel));
+        server.createContext("/warmup", exchange -> stub.handle(exchange, ex -> json(ex, 200, new JsonObject())));
+        server.createContext("/freeze", exchange -> stub.handle(exchange, ex -> json(ex, 200, new JsonObject())));
+        server.createContext("/health", exchange -> stub.handle(exchange, ex -> {
+            JsonObject status = new JsonObject();
+            status.addProperty("status", "ok");
+            json(ex, 200, status);
+        }));
+        server.setExecutor(executor);
+        server.start();
+
+        return server;
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            handler.handle(exchange);
+        } catch (RuntimeException e) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", String.valueOf(e.getMessage()));
+            json(exchange, 500, error);
+        }
+    }
+
+    /**
+     * Thrown when a script is cancelled or runs past its deadline, like the backend's ScriptCancelled.
+     */
+    private static class Stopped extends Exception {
+        final int status;
+
+        Stopped(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void run(HttpExchange exchange) throws IOException {
+        JsonObject script = body(exchange);
+
+        try {
+            json(exchange, 200, runScript(script, exchange.getRequestHeaders().getFirst(BackendClient.JOB_HEADER), null));
+        } catch (Stopped e) {
+            stopped(exchange, e);
+        }
+    }
+
+    private void runBinary(HttpExchange exchange) throws IOException {
+        JsonObject script = body(exchange);
+
+        JsonObject results;
+        try {
+            results = runScript(script, exchange.getRequestHeaders().getFirst(BackendClient.JOB_HEADER), null);
+        } catch (Stopped e) {
+            stopped(exchange, e);
+            return;
+        }
+
+        // Every return comes back as an attachment, like audio would.
+        Map<String, byte[]> attachments = new LinkedHashMap<>();
+        for (String name : results.keySet())
+            attachments.put(name, results.get(name).getAsString().getBytes(StandardCharsets.UTF_8));
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-locrow-frames");
+        exchange.sendResponseHeaders(200, 0);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(exchange.getResponseBody()))) {
+            byte[] json = "{}".getBytes(StandardCharsets.UTF_8);
+            out.writeInt(json.length);
+            out.write(json);
+            for (Map.Entry<String, byte[]> attachment : attachments.entrySet()) {
+                byte[] name = attachment.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(attachment.getValue().length);
+                out.write(attachment.getValue());
+            }
+        }
+    }
+
+    private void runStream(HttpExchange exchange) throws IOException {
+        JsonObject script = body(exchange);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            JsonObject results;
+            try {
+                results = runScript(script, exchange.getRequestHeaders().getFirst(BackendClient.JOB_HEADER), (id, call) -> {
+                    // A few tokens per call, as an LLM would stream them.
+                    for (int i = 0; i < 4; i++) {
+                        JsonObject token = new JsonObject();
+                        token.addProperty("text", "stub ");
+                        line(out, "token", id, token);
+                    }
+
+                    JsonObject data = new JsonObject();
+                    data.addProperty("call", call);
+                    line(out, "call", id, data);
+                });
+            } catch (Stopped e) {
+                JsonObject error = new JsonObject();
+                error.addProperty("type", e.status == 504 ? "DeadlineExceeded" : "ScriptCancelled");
+                error.addProperty("message", e.getMessage());
+                line(out, "error", null, error);
+                return;
+            }
+
+            line(out, "result", null, results);
+        }
+    }
+
+    private static void line(Writer out, String event, String id, JsonObject data) {
+        JsonObject line = new JsonObject();
+        line.addProperty("event", event);
+        line.addProperty("id", id);
+        line.add("data", data);
+
+        try {
+            out.write(line + "\n");
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void runBatch(HttpExchange exchange) throws IOException {
+        JsonArray scripts = body(exchange).getAsJsonArray("scripts");
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        if (scripts == null || scripts.isEmpty()) {
+            exchange.getResponseBody().close();
+            return;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(scripts.size(), MAX_BATCH_WORKERS));
+        CompletionService<JsonObject> completion = new ExecutorCompletionService<>(workers);
+        for (int i = 0; i < scripts.size(); i++) {
+            int index = i;
+            JsonObject script = scripts.get(i).getAsJsonObject();
+            completion.submit(() -> {
+                JsonObject line = new JsonObject();
+                line.addProperty("index", index);
+                try {
+                    line.add("results", runScript(script, null, null));
+                } catch (Stopped e) {
+                    line.add("error", batchError(e.status == 504 ? "DeadlineExceeded" : "ScriptCancelled", e.getMessage(), e.status));
+                } catch (Exception e) {
+                    line.add("error", batchError(e.getClass().getSimpleName(), e.getMessage(), 500));
+                }
+                return line;
+            });
+        }
+
+        try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < scripts.size(); i++) {
+                out.write(completion.take().get() + "\n");
+                out.flush();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void prepare(HttpExchange exchange) throws IOException {
+        String handle = UUID.randomUUID().toString().replace("-", "");
+        prepared.put(handle, body(exchange));
+
+        JsonObject response = new JsonObject();
+        response.addProperty("handle", handle);
+        json(exchange, 200, response);
+    }
+
+    private void runPrepared(HttpExchange exchange) throws IOException {
+        String handle = exchange.getRequestURI().getPath().substring("/run_prepared/".length());
+        JsonObject script = prepared.get(handle);
+        body(exchange);
+
+        if (script == null) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Unknown prepared script " + handle);
+            json(exchange, 404, error);
+            return;
+        }
+
+        try {
+            json(exchange, 200, runScript(script, exchange.getRequestHeaders().getFirst(BackendClient.JOB_HEADER), null));
+        } catch (Stopped e) {
+            stopped(exchange, e);
+        }
+    }
+
+    private static JsonObject batchError(String type, String message, int status) {
+        JsonObject error = new JsonObject();
+        error.addProperty("type", type);
+        error.addProperty("message", message);
+        error.addProperty("status", status);
+        return error;
+    }
+
+    private void cancel(HttpExchange exchange) throws IOException {
+        Thread job = jobs.get(body(exchange).get("job_id").getAsString());
+        if (job != null) job.interrupt();
+
+        JsonObject status = new JsonObject();
+        status.addProperty("status", job != null ? "cancelled" : "unknown");
+        json(exchange, 200, status);
+    }
+
+    private interface CallListener {
+        void called(String id, String call);
+    }
+
+    /**
+     * Waits out the script's latency, spread over its calls, and makes up its results.
+     */
+    private JsonObject runScript(JsonObject script, String jobID, CallListener listener) throws Stopped {
+        if (jobID != null) jobs.put(jobID, Thread.currentThread());
+
+        try {
+            if (ThreadLocalRandom.current().nextDouble() < profile.errorRate())
+                throw new IllegalStateException("Stub failure");
+
+            JsonArray calls = script.has("script") ? script.getAsJsonArray("script") : new JsonArray();
+            long latency = latency();
+            long deadline = script.has("deadline_ms") && !script.get("deadline_ms").isJsonNull()
+                    ? script.get("deadline_ms").getAsLong() : Long.MAX_VALUE;
+
+            int steps = Math.max(1, calls.size());
+            long elapsed = 0;
+            for (int i = 0; i < steps; i++) {
+                long step = latency / steps;
+                if (elapsed + step > deadline) {
+                    sleep(deadline - elapsed);
+                    throw new Stopped(504, "Script ran past its deadline");
+                }
+                sleep(step);
+                elapsed += step;
+
+                if (listener != null && i < calls.size()) {
+                    JsonObject call = calls.get(i).getAsJsonObject();
+                    listener.called(call.has("id") && !call.get("id").isJsonNull() ? call.get("id").getAsString() : null,
+                            call.has("call") && !call.get("call").isJsonNull() ? call.get("call").getAsString() : null);
+                }
+            }
+
+            return results(script);
+        } finally {
+            if (jobID != null) jobs.remove(jobID);
+            Thread.interrupted();
+        }
+    }
+
+    private static void sleep(long millis) throws Stopped {
+        try {
+            if (millis > 0) Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new Stopped(409, "Job cancelled");
+        }
+    }
+
+    private long latency() {
+        long millis = profile.latency().toMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        return switch (profile.distribution()) {
+            case FIXED -> millis;
+            case UNIFORM -> (long) (random.nextDouble() * 2 * millis);
+            case LONG_TAIL -> (long) (millis * Math.exp(random.nextGaussian()));
+        };
+    }
+
+    private JsonObject results(JsonObject script) {
+        Set<String> names = script.has("returns") && script.get("returns").isJsonObject()
+                ? script.getAsJsonObject("returns").keySet() : Set.of();
+        if (names.isEmpty()) names = Set.of("payload");
+
+        String filler = "x".repeat(profile.payloadBytes() / names.size());
+        JsonObject results = new JsonObject();
+        for (String name : names)
+            results.addProperty(name, filler);
+        return results;
+    }
+
+    private static JsonObject body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonElement body = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            return body.isJsonObject() ? body.getAsJsonObject() : new JsonObject();
+        }
+    }
+
+    private static void stopped(HttpExchange exchange, Stopped e) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", e.getMessage());
+        json(exchange, e.status, error);
+    }
+
+    private static void json(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Runs the stub on its own, e.g. in CI. Prints the same startup line as uvicorn, so anything that waits for
+     * the real backend to come up also works with the stub.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "--port", "8000",
+                "--latency-ms", "200",
+                "--distribution", Distribution.FIXED.name(),
+                "--payload-bytes", "4096",
+                "--error-rate", "0"
+        ));
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!options.containsKey(args[i])) {
+                System.err.println("Unknown option " + args[i] + ", expected one of " + new TreeSet<>(options.keySet()));
+                System.exit(2);
+            }
+            options.put(args[i], args[i + 1]);
+        }
+
+        Profile profile = new Profile(
+                Duration.ofMillis(Long.parseLong(options.get("--latency-ms"))),
+                Distribution.valueOf(options.get("--distribution").toUpperCase(Locale.ROOT)),
+                Integer.parseInt(options.get("--payload-bytes")),
+                Double.parseDouble(options.get("--error-rate"))
+        );
+
+        HttpServer server = serve(Integer.parseInt(options.get("--port")), profile, Executors.newCachedThreadPool());
+        System.out.println("Uvicorn running on http://127.0.0.1:" + server.getAddress().getPort() + " (Locrow AI stub backend, " + profile + ")");
+    }
+}
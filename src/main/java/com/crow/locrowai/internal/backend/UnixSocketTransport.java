@@ -0,0 +1,299 @@
+package com.crow.locrowai.internal.backend;
+
+import com.crow.locrowai.internal.runtime.Cancellation;
+
+import javax.net.ssl.SSLSession;
+import java.io.*;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Speaks just enough HTTP/1.1 to reach the backend over a Unix domain socket, which HttpClient cannot do. Bodies
+ * are handed to the usual {@link HttpResponse.BodyHandler}s, so callers cannot tell which transport was used.
+ * Each request opens its own connection, since connecting to a socket file costs far less than a TCP handshake.
+ */
+class UnixSocketTransport {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger threadId = new AtomicInteger(0);
+
+    // Every open exchange holds a thread for as long as its body is being read, so this pool must not be bounded.
+    private static final ExecutorService io = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Locrow-AI-Backend-Socket-" + threadId.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Response<T>(HttpRequest request, int statusCode, HttpHeaders headers, T body) implements HttpResponse<T> {
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+
+    private record Info(int statusCode, HttpHeaders headers) implements HttpResponse.ResponseInfo {
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+
+    /**
+     * Hands body pieces to the subscriber only as fast as it asks for them.
+     */
+    private static class Pump implements Flow.Subscription {
+        private final SocketChannel channel;
+        private long demand;
+        private boolean cancelled;
+
+        Pump(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                cancel();
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+            close(channel);
+        }
+
+        synchronized boolean await() throws InterruptedException {
+            while (demand == 0 && !cancelled) wait();
+            if (cancelled) return false;
+
+            demand--;
+            return true;
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    static <T> CompletableFuture<HttpResponse<T>> sendAsync(Path socket, HttpRequest request,
+                                                         HttpResponse.BodyHandler<T> handler, Executor executor) {
+        CompletableFuture<HttpResponse<T>> future = new CompletableFuture<>();
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        future.whenComplete((response, err) -> {
+            if (future.isCancelled()) close(channel);
+        });
+        request.timeout().ifPresent(timeout -> Cancellation.expireAfter(future, timeout, () -> {
+            if (future.completeExceptionally(new HttpTimeoutException("request timed out"))) close(channel);
+        }));
+
+        io.execute(() -> exchange(channel, request, handler, executor, future));
+
+        return future;
+    }
+
+    private static <T> void exchange(SocketChannel channel, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                     Executor executor, CompletableFuture<HttpResponse<T>> future) {
+        HttpResponse.BodySubscriber<T> subscriber = null;
+        Pump pump = new Pump(channel);
+
+        try {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write(head(request, body(request)));
+            out.flush();
+
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+
+            String[] status = readLine(in).split(" ", 3);
+            int code = Integer.parseInt(status[1]);
+
+            Map<String, List<String>> fields = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                fields.computeIfAbsent(line.substring(0, colon).trim(), key -> new ArrayList<>())
+                        .add(line.substring(colon + 1).trim());
+            }
+            HttpHeaders headers = HttpHeaders.of(fields, (name, value) -> true);
+
+            subscriber = handler.apply(new Info(code, headers));
+            subscriber.onSubscribe(pump);
+            subscriber.getBody().whenCompleteAsync((body, err) -> {
+                if (err != null)
+                    future.completeExceptionally(err);
+                else
+                    future.complete(new Response<>(request, code, headers, body));
+            }, executor);
+
+            BodyReader reader = new BodyReader(in, headers, code);
+            while (pump.await()) {
+                ByteBuffer piece = reader.next();
+                if (piece == null) {
+                    subscriber.onComplete();
+                    break;
+                }
+                subscriber.onNext(List.of(piece));
+            }
+        } catch (Exception e) {
+            if (!pump.isCancelled()) {
+                if (subscriber != null) subscriber.onError(e);
+                future.completeExceptionally(e);
+            }
+        } finally {
+            close(channel);
+        }
+    }
+
+    private static byte[] body(HttpRequest request) {
+        CompletableFuture<byte[]> done = new CompletableFuture<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        request.bodyPublisher().orElse(HttpRequest.BodyPublishers.noBody()).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(out.toByteArray());
+            }
+        });
+
+        return done.join();
+    }
+
+    private static byte[] head(HttpRequest request, byte[] body) {
+        String target = request.uri().getRawPath();
+        if (request.uri().getRawQuery() != null) target += "?" + request.uri().getRawQuery();
+
+        StringBuilder head = new StringBuilder()
+                .append(request.method()).append(' ').append(target).append(" HTTP/1.1\r\n")
+                .append("Host: localhost\r\n")
+                .append("Connection: close\r\n")
+                .append("Content-Length: ").append(body.length).append("\r\n");
+        request.headers().map().forEach((name, values) ->
+                values.forEach(value -> head.append(name).append(": ").append(value).append("\r\n")));
+        head.append("\r\n");
+
+        byte[] bytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] message = Arrays.copyOf(bytes, bytes.length + body.length);
+        System.arraycopy(body, 0, message, bytes.length, body.length);
+        return message;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) throw new EOFException("Backend closed the connection mid-response.");
+            if (b != '\r') line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    private static void close(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Splits a response body into pieces, undoing chunked transfer encoding if the backend used it.
+     */
+    private static class BodyReader {
+        private final InputStream in;
+        private final boolean chunked;
+        private long remaining;
+        private boolean started;
+
+        BodyReader(InputStream in, HttpHeaders headers, int code) {
+            this.in = in;
+            this.chunked = headers.firstValue("Transfer-Encoding").map(value -> value.contains("chunked")).orElse(false);
+            this.remaining = code == 204 || code == 304 ? 0 : headers.firstValueAsLong("Content-Length").orElse(-1);
+        }
+
+        ByteBuffer next() throws IOException {
+            if (chunked && remaining <= 0) {
+                if (remaining == -2) return null;
+                if (started) readLine(in);
+                started = true;
+
+                String size = readLine(in);
+                int extension = size.indexOf(';');
+                remaining = Long.parseLong((extension < 0 ? size : size.substring(0, extension)).trim(), 16);
+
+                if (remaining == 0) {
+                    while (!readLine(in).isEmpty()) ;
+                    remaining = -2;
+                    return null;
+                }
+            }
+            if (remaining == 0) return null;
+
+            int length = remaining < 0 ? BUFFER_SIZE : (int) Math.min(remaining, BUFFER_SIZE);
+            byte[] bytes = new byte[length];
+            int read = in.read(bytes);
+            if (read == -1) {
+                if (remaining < 0) return null;
+                throw new EOFException("Backend closed the connection mid-response.");
+            }
+            if (remaining > 0) remaining -= read;
+
+            return ByteBuffer.wrap(bytes, 0, read);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.crow.locrowai.internal.commands;
+
+import com.crow.locrowai.api.AIContext;
+import com.crow.locrowai.api.registration.AIRegistry;
+import com.crow.locrowai.api.runtime.Script;
+import com.crow.locrowai.internal.Config;
+import com.crow.locrowai.internal.LocrowAI;
+import com.crow.locrowai.internal.metrics.LatencyHistogram;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static net.minecraft.commands.Commands.argument;
+import static net.minecraft.commands.Commands.literal;
+
+class BenchCommand {
+
+    // Identical scripts in flight share one execution, so every copy gets a distinct var.
+    private static final String RUN_VAR = "locrowai_bench_run";
+
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+
+    BenchCommand(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(literal(LocrowAI.MODID)
+                .then(literal("bench")
+                        .requires(source -> source.hasPermission(2))
+                        .then(argument("script", StringArgumentType.string())
+                                .then(argument("concurrency", IntegerArgumentType.integer(1, 1024))
+                                        .then(argument("count", IntegerArgumentType.integer(1, 1000000))
+                                                .executes(context -> {
+                                                    CommandSourceStack source = context.getSource();
+
+                                                    JsonObject blueprint;
+                                                    try {
+                                                        blueprint = JsonParser.parseString(StringArgumentType.getString(context, "script")).getAsJsonObject();
+                                                    } catch (JsonParseException | IllegalStateException e) {
+                                                        source.sendFailure(Component.literal("The script is not a JSON object: " + e.getMessage()));
+                                                        return 0;
+                                                    }
+
+                                                    if (!running.compareAndSet(false, true)) {
+                                                        source.sendFailure(Component.literal("A benchmark is already running."));
+                                                        return 0;
+                                                    }
+
+                                                    new Run(message -> source.sendSystemMessage(Component.literal(message)),
+                                                            AIRegistry.getContext(LocrowAI.MODID), blueprint,
+                                                            IntegerArgumentType.getInteger(context, "concurrency"),
+                                                            IntegerArgumentType.getInteger(context, "count")).start();
+                                                    return 1;
+                                                })
+                                        )
+                                )
+                        )
+                )
+        );
+    }
+
+    /**
+     * Keeps {@code concurrency} copies of the script in flight until {@code count} have finished.
+     */
+    static class Run {
+        private final Consumer<String> output;
+        private final AIContext context;
+        private final JsonObject blueprint;
+        private final int concurrency;
+        private final int count;
+
+        private final AtomicInteger launched = new AtomicInteger(0);
+        private final AtomicInteger finished = new AtomicInteger(0);
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<String, Integer> errors = new TreeMap<>();
+        private long started;
+
+        Run(Consumer<String> output, AIContext context, JsonObject blueprint, int concurrency, int count) {
+            this.output = output;
+            this.context = context;
+            this.blueprint = blueprint;
+            this.concurrency = concurrency;
+            this.count = count;
+        }
+
+        void start() {
+            output.accept(String.format(Locale.ROOT,
+                    "Running %d scripts, %d at a time, %s.", count, concurrency,
+                    Config.offloading ? "offloaded to volunteers" : "on the local backend"));
+
+            started = System.nanoTime();
+            for (int i = 0; i < Math.min(concurrency, count); i++)
+                next();
+        }
+
+        private void next() {
+            int run = launched.getAndIncrement();
+            if (run >= count) return;
+
+            JsonObject copy = blueprint.deepCopy();
+            if (!copy.has("vars") || !copy.get("vars").isJsonObject()) copy.add("vars", new JsonObject());
+            copy.getAsJsonObject("vars").addProperty(RUN_VAR, run);
+
+            long start = System.nanoTime();
+            // Async, so scripts that fail straight away do not chain the next run onto this stack.
+            context.execute(new Script(null, copy.toString())).whenCompleteAsync((results, err) -> {
+                latency.record(System.nanoTime() - start);
+                if (err != null) {
+                    Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                    synchronized (errors) {
+                        errors.merge(cause.getClass().getSimpleName(), 1, Integer::sum);
+                    }
+                }
+
+                if (finished.incrementAndGet() == count) report();
+                else next();
+            });
+        }
+
+        private void report() {
+            running.set(false);
+
+            double seconds = (System.nanoTime() - started) / 1e9;
+            int failed = errors.values().stream().mapToInt(Integer::intValue).sum();
+
+            output.accept(String.format(Locale.ROOT,
+                    "%d scripts in %.2fs: %.1f/s | p50 %.1fms, p95 %.1fms, p99 %.1fms, max %.1fms | %d errors",
+                    count, seconds, count / seconds,
+                    latency.getPercentileMillis(0.5), latency.getPercentileMillis(0.95),
+                    latency.getPercentileMillis(0.99), latency.getMaxMillis(), failed));
+            errors.forEach((type, times) -> output.accept("  " + type + ": " + times));
+        }
+    }
+}
@@ -11,5 +11,7 @@ class Dispatcher {
     @SubscribeEvent
     static void registerCommands(RegisterCommandsEvent event) {
         new RunScriptCommand(event.getDispatcher());
+        new BenchCommand(event.getDispatcher());
+        new StatsCommand(event.getDispatcher());
     }
 }
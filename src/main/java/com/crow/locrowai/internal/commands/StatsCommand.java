@@ -0,0 +1,70 @@
+package com.crow.locrowai.internal.commands;
+
+import com.crow.locrowai.internal.LocrowAI;
+import com.crow.locrowai.internal.backend.BackendDispatcher;
+import com.crow.locrowai.internal.metrics.LatencyHistogram;
+import com.crow.locrowai.internal.metrics.Metrics;
+import com.crow.locrowai.internal.metrics.ScriptMetrics;
+import com.mojang.brigadier.CommandDispatcher;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.Component;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static net.minecraft.commands.Commands.literal;
+
+class StatsCommand {
+    StatsCommand(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(literal(LocrowAI.MODID)
+                .then(literal("stats")
+                        .executes(context -> {
+                            CommandSourceStack source = context.getSource();
+
+                            Map<String, Metrics.ContextMetrics> contexts = Metrics.getContexts();
+                            source.sendSystemMessage(Component.literal(String.format(Locale.ROOT,
+                                    "Backend: %d running, %d queued", BackendDispatcher.getRunning(),
+                                    BackendDispatcher.getQueueDepths().values().stream().mapToInt(Integer::intValue).sum())));
+                            if (contexts.isEmpty())
+                                source.sendSystemMessage(Component.literal("No scripts have run yet."));
+
+                            contexts.forEach((modID, metrics) -> {
+                                source.sendSystemMessage(Component.literal(modID + ": " + summary(metrics.getScripts())));
+                                metrics.getCalls().forEach((callID, call) ->
+                                        source.sendSystemMessage(Component.literal("  " + callID + ": " + summary(call))));
+                            });
+                            return 0;
+                        })
+                        .then(literal("reset")
+                                .requires(source -> source.hasPermission(2))
+                                .executes(context -> {
+                                    Metrics.reset();
+                                    context.getSource().sendSystemMessage(Component.literal("Script metrics reset."));
+                                    return 0;
+                                })
+                        )
+                )
+        );
+    }
+
+    private static String summary(ScriptMetrics metrics) {
+        LatencyHistogram latency = metrics.getLatency();
+
+        return String.format(Locale.ROOT,
+                "%d done, %d in flight, %d errors, %d timed out | p50 %s, p99 %s, max %s (queue p50 %s, run p50 %s) | %s sent, %s received",
+                latency.getCount(), metrics.getInFlight(), metrics.getErrors(), metrics.getTimeouts(),
+                millis(latency.getPercentileMillis(0.5)), millis(latency.getPercentileMillis(0.99)), millis(latency.getMaxMillis()),
+                millis(metrics.getQueueWait().getPercentileMillis(0.5)), millis(metrics.getExecution().getPercentileMillis(0.5)),
+                bytes(metrics.getBytesSent()), bytes(metrics.getBytesReceived()));
+    }
+
+    private static String millis(double millis) {
+        return millis >= 1000 ? String.format(Locale.ROOT, "%.2fs", millis / 1000) : String.format(Locale.ROOT, "%.1fms", millis);
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes >= 1024 * 1024) return String.format(Locale.ROOT, "%.1fMB", bytes / (1024.0 * 1024.0));
+        if (bytes >= 1024) return String.format(Locale.ROOT, "%.1fKB", bytes / 1024.0);
+        return bytes + "B";
+    }
+}
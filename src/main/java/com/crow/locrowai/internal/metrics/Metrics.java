@@ -0,0 +1,221 @@
+package com.crow.locrowai.internal.metrics;
+
+import com.crow.locrowai.api.runtime.exceptions.ScriptTimeoutException;
+import com.crow.locrowai.internal.backend.JsonStreams;
+import com.crow.locrowai.internal.metrics.events.ScriptExecutionEvent;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Script metrics for every context, each broken down further by the call IDs its scripts use. A script with
+ * several calls counts towards each of them, so per call figures describe the scripts a call took part in.
+ */
+@ApiStatus.Internal
+public class Metrics {
+
+    public static class ContextMetrics {
+        private final ScriptMetrics scripts = new ScriptMetrics();
+        private final Map<String, ScriptMetrics> calls = new ConcurrentHashMap<>();
+
+        public ScriptMetrics getScripts() {
+            return scripts;
+        }
+
+        /**
+         * Per call ID, sorted by call ID.
+         */
+        public SortedMap<String, ScriptMetrics> getCalls() {
+            return new TreeMap<>(calls);
+        }
+    }
+
+    /**
+     * Offloaded scripts and results sent to or received from the server, as chunks.
+     */
+    public static class Transfers {
+        private final LongAdder chunks = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        public long getChunks() {
+            return chunks.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+    }
+
+    public enum Direction {
+        SENT,
+        RECEIVED
+    }
+
+    private static final Map<String, ContextMetrics> contexts = new ConcurrentHashMap<>();
+    private static final Map<String, Transfers> transfers = new ConcurrentHashMap<>();
+    private static final Map<String, Double> installStages = new ConcurrentHashMap<>();
+    private static final LatencyHistogram hashVerification = new LatencyHistogram();
+    private static final LongAdder hashedBytes = new LongAdder();
+
+    /**
+     * Starts measuring a script that was just submitted by context {@code modID}.
+     */
+    public static Sample start(String modID, Set<String> callIDs) {
+        ContextMetrics context = contexts.computeIfAbsent(modID, id -> new ContextMetrics());
+
+        ScriptMetrics[] targets = new ScriptMetrics[callIDs.size() + 1];
+        targets[0] = context.scripts;
+        int i = 1;
+        for (String callID : callIDs)
+            targets[i++] = context.calls.computeIfAbsent(callID, id -> new ScriptMetrics());
+
+        return new Sample(modID, callIDs, targets);
+    }
+
+    /**
+     * Per context, sorted by mod ID.
+     */
+    public static SortedMap<String, ContextMetrics> getContexts() {
+        return new TreeMap<>(contexts);
+    }
+
+    /**
+     * Counts one chunk of an offloaded {@code kind} ("execute" or "result") going over the network.
+     */
+    public static void chunk(String kind, Direction direction, int bytes) {
+        Transfers transfer = transfers.computeIfAbsent(kind + '/' + direction.name().toLowerCase(Locale.ROOT), key -> new Transfers());
+        transfer.chunks.increment();
+        transfer.bytes.add(bytes);
+    }
+
+    /**
+     * Per kind and direction, as "kind/direction", sorted.
+     */
+    public static SortedMap<String, Transfers> getTransfers() {
+        return new TreeMap<>(transfers);
+    }
+
+    /**
+     * How long an install stage took the last time it ran.
+     */
+    public static void installStage(String stage, long nanos) {
+        installStages.put(stage, nanos / 1e9);
+    }
+
+    /**
+     * Seconds taken by each install stage the last time it ran, sorted by stage name.
+     */
+    public static SortedMap<String, Double> getInstallStages() {
+        return new TreeMap<>(installStages);
+    }
+
+    public static void hashVerified(long bytes, long nanos) {
+        hashVerification.record(nanos);
+        hashedBytes.add(bytes);
+    }
+
+    public static LatencyHistogram getHashVerification() {
+        return hashVerification;
+    }
+
+    public static long getHashedBytes() {
+        return hashedBytes.sum();
+    }
+
+    public static void reset() {
+        for (ContextMetrics context : contexts.values()) {
+            context.scripts.reset();
+            context.calls.values().forEach(ScriptMetrics::reset);
+        }
+    }
+
+    /**
+     * One script's trip through the backend, also recorded for Flight Recorder as a {@link ScriptExecutionEvent}.
+     * {@link #finish(Throwable)} must be called exactly once.
+     */
+    public static class Sample {
+        private final ScriptMetrics[] targets;
+        private final ScriptExecutionEvent event = new ScriptExecutionEvent();
+        private final Set<String> callIDs;
+        private final long submitted = System.nanoTime();
+        private volatile long started = 0;
+        private volatile long sent = 0;
+        private volatile long received = 0;
+
+        private Sample(String modID, Set<String> callIDs, ScriptMetrics[] targets) {
+            this.targets = targets;
+            this.callIDs = callIDs;
+            for (ScriptMetrics target : targets) target.inFlight.incrementAndGet();
+
+            event.mod = modID;
+            event.begin();
+        }
+
+        /**
+         * The script left the queue and was sent to the backend.
+         */
+        public void started() {
+            if (started != 0) return;
+
+            started = System.nanoTime();
+            for (ScriptMetrics target : targets) target.queueWait.record(started - submitted);
+        }
+
+        public void sent(long bytes) {
+            sent += bytes;
+            for (ScriptMetrics target : targets) target.bytesSent.add(bytes);
+        }
+
+        public void received(long bytes) {
+            received += bytes;
+            for (ScriptMetrics target : targets) target.bytesReceived.add(bytes);
+        }
+
+        /**
+         * Counts what is read from {@code in} as received.
+         */
+        public InputStream counting(InputStream in) {
+            return JsonStreams.counting(in, this::received);
+        }
+
+        public void finish(Throwable err) {
+            long now = System.nanoTime();
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.calls = String.join(",", callIDs);
+                event.queueWait = started == 0 ? 0 : started - submitted;
+                event.bytesSent = sent;
+                event.bytesReceived = received;
+                event.outcome = cause == null ? "completed"
+                        : cause instanceof CancellationException ? "cancelled"
+                        : cause instanceof ScriptTimeoutException ? "timed out"
+                        : "failed";
+                event.commit();
+            }
+
+            for (ScriptMetrics target : targets) {
+                target.inFlight.decrementAndGet();
+
+                if (cause instanceof CancellationException) {
+                    target.cancelled.increment();
+                    continue;
+                }
+
+                target.latency.record(now - submitted);
+                if (started != 0) target.execution.record(now - started);
+
+                if (cause instanceof ScriptTimeoutException)
+                    target.timeouts.increment();
+                else if (cause != null)
+                    target.errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.crow.locrowai.internal.metrics;
+
+import com.crow.locrowai.api.runtime.BackendStatus;
+import com.crow.locrowai.api.runtime.Script;
+import com.crow.locrowai.internal.Config;
+import com.crow.locrowai.internal.LocrowAI;
+import com.crow.locrowai.internal.backend.BackendDispatcher;
+import com.crow.locrowai.internal.backend.BackendHealth;
+import com.crow.locrowai.internal.backend.LoadManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link Metrics}, the backend's queue and health, and the resources its process uses, in the Prometheus
+ * text format on {@code 127.0.0.1:<metricsPort>/metrics}. Only loopback is bound; expose it through whatever
+ * already scrapes the host.
+ */
+@ApiStatus.Internal
+public class PrometheusExporter {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private static HttpServer server;
+
+    public static synchronized void start() {
+        if (server != null || Config.metricsPort <= 0) return;
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), Config.metricsPort), 0);
+        } catch (IOException e) {
+            LocrowAI.LOGGER().error("Could not serve metrics on port {}", Config.metricsPort, e);
+            return;
+        }
+
+        server.createContext("/metrics", PrometheusExporter::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Locrow-AI-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+
+        LocrowAI.LOGGER().info("Serving metrics on http://127.0.0.1:{}/metrics", Config.metricsPort);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String scrape() {
+        StringBuilder out = new StringBuilder();
+
+        Map<String, Metrics.ContextMetrics> contexts = Metrics.getContexts();
+
+        header(out, "locrowai_script_latency_seconds", "summary", "Time from submitting a script until its results were ready.");
+        contexts.forEach((mod, context) -> summary(out, "locrowai_script_latency_seconds", labels(mod, null), context.getScripts().getLatency()));
+        header(out, "locrowai_script_queue_seconds", "summary", "Time scripts waited before being sent to the backend.");
+        contexts.forEach((mod, context) -> summary(out, "locrowai_script_queue_seconds", labels(mod, null), context.getScripts().getQueueWait()));
+        header(out, "locrowai_script_execution_seconds", "summary", "Time from sending a script to the backend until its results were ready.");
+        contexts.forEach((mod, context) -> summary(out, "locrowai_script_execution_seconds", labels(mod, null), context.getScripts().getExecution()));
+        header(out, "locrowai_call_latency_seconds", "summary", "Latency of the scripts that made each call.");
+        contexts.forEach((mod, context) -> context.getCalls().forEach((call, metrics) ->
+                summary(out, "locrowai_call_latency_seconds", labels(mod, call), metrics.getLatency())));
+
+        header(out, "locrowai_scripts_in_flight", "gauge", "Scripts submitted that have not finished yet.");
+        contexts.forEach((mod, context) -> sample(out, "locrowai_scripts_in_flight", labels(mod, null), context.getScripts().getInFlight()));
+        header(out, "locrowai_script_errors_total", "counter", "Scripts that failed, not counting timeouts.");
+        contexts.forEach((mod, context) -> sample(out, "locrowai_script_errors_total", labels(mod, null), context.getScripts().getErrors()));
+        header(out, "locrowai_script_timeouts_total", "counter", "Scripts stopped for running past their deadline.");
+        contexts.forEach((mod, context) -> sample(out, "locrowai_script_timeouts_total", labels(mod, null), context.getScripts().getTimeouts()));
+        header(out, "locrowai_script_cancelled_total", "counter", "Scripts cancelled by their caller.");
+        contexts.forEach((mod, context) -> sample(out, "locrowai_script_cancelled_total", labels(mod, null), context.getScripts().getCancelled()));
+        header(out, "locrowai_script_sent_bytes_total", "counter", "Script bytes sent to the backend or offloaded.");
+        contexts.forEach((mod, context) -> sample(out, "locrowai_script_sent_bytes_total", labels(mod, null), context.getScripts().getBytesSent()));
+        header(out, "locrowai_script_received_bytes_total", "counter", "Result bytes read back from the backend.");
+        contexts.forEach((mod, context) -> sample(out, "locrowai_script_received_bytes_total", labels(mod, null), context.getScripts().getBytesReceived()));
+
+        header(out, "locrowai_backend_running", "gauge", "Scripts currently running on the local backend.");
+        sample(out, "locrowai_backend_running", "", BackendDispatcher.getRunning());
+        header(out, "locrowai_backend_queued", "gauge", "Scripts waiting for the local backend, per priority.");
+        for (Script.Priority priority : Script.Priority.values())
+            sample(out, "locrowai_backend_queued", "{priority=\"" + priority.name().toLowerCase(Locale.ROOT) + "\"}",
+                    BackendDispatcher.getQueued(priority));
+
+        BackendStatus status = BackendHealth.getStatus();
+        header(out, "locrowai_backend_up", "gauge", "Whether the local backend is accepting scripts.");
+        sample(out, "locrowai_backend_up", "", status.isAvailable() ? 1 : 0);
+        header(out, "locrowai_backend_error_ratio", "gauge", "Share of recent backend requests that failed.");
+        sample(out, "locrowai_backend_error_ratio", "", status.errorRate());
+        if (status.latencyMillis() >= 0) {
+            header(out, "locrowai_backend_probe_seconds", "gauge", "Smoothed round trip time of backend health probes.");
+            sample(out, "locrowai_backend_probe_seconds", "", status.latencyMillis() / 1000);
+        }
+
+        LoadManager.ProcessUsage usage = LoadManager.getUsage();
+        if (usage != null) {
+            header(out, "locrowai_backend_resident_memory_bytes", "gauge", "Resident memory of the backend and its child processes.");
+            sample(out, "locrowai_backend_resident_memory_bytes", "", usage.residentBytes());
+            header(out, "locrowai_backend_virtual_memory_bytes", "gauge", "Virtual memory of the backend and its child processes.");
+            sample(out, "locrowai_backend_virtual_memory_bytes", "", usage.virtualBytes());
+            header(out, "locrowai_backend_cpu_seconds_total", "counter", "CPU time used by the backend and its child processes.");
+            sample(out, "locrowai_backend_cpu_seconds_total", "", usage.cpuSeconds());
+            header(out, "locrowai_backend_threads", "gauge", "Threads in the backend and its child processes.");
+            sample(out, "locrowai_backend_threads", "", usage.threads());
+        }
+
+        Map<String, Metrics.Transfers> transfers = Metrics.getTransfers();
+        header(out, "locrowai_offload_chunks_total", "counter", "Chunks of offloaded scripts and results sent or received.");
+        transfers.forEach((key, transfer) -> sample(out, "locrowai_offload_chunks_total", transferLabels(key), transfer.getChunks()));
+        header(out, "locrowai_offload_chunk_bytes_total", "counter", "Compressed bytes of offloaded scripts and results sent or received.");
+        transfers.forEach((key, transfer) -> sample(out, "locrowai_offload_chunk_bytes_total", transferLabels(key), transfer.getBytes()));
+
+        header(out, "locrowai_install_stage_seconds", "gauge", "How long each install stage took the last time it ran.");
+        Metrics.getInstallStages().forEach((stage, seconds) ->
+                sample(out, "locrowai_install_stage_seconds", "{stage=\"" + escape(stage) + "\"}", seconds));
+        header(out, "locrowai_hash_verification_seconds", "summary", "Time taken to verify the hash of one backend file.");
+        summary(out, "locrowai_hash_verification_seconds", "", Metrics.getHashVerification());
+        header(out, "locrowai_hash_verification_bytes_total", "counter", "Bytes of backend files whose hash was verified.");
+        sample(out, "locrowai_hash_verification_bytes_total", "", Metrics.getHashedBytes());
+
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        for (double quantile : QUANTILES)
+            sample(out, name, prefix + "quantile=\"" + quantile + "\"}", histogram.getPercentileMillis(quantile) / 1000);
+        sample(out, name + "_sum", labels, histogram.getSumMillis() / 1000);
+        sample(out, name + "_count", labels, histogram.getCount());
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            out.append((long) value);
+        else
+            out.append(value);
+        out.append('\n');
+    }
+
+    private static String labels(String mod, String call) {
+        String labels = "{mod=\"" + escape(mod) + "\"";
+        if (call != null) labels += ",call=\"" + escape(call) + "\"";
+        return labels + "}";
+    }
+
+    private static String transferLabels(String key) {
+        int slash = key.indexOf('/');
+        return "{kind=\"" + key.substring(0, slash) + "\",direction=\"" + key.substring(slash + 1) + "\"}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,80 @@
+package com.crow.locrowai.internal.metrics;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What happened to the scripts of one context, or to the scripts of one context that made a given call.
+ * Latency is split into time spent waiting for the backend and time spent running on it.
+ */
+@ApiStatus.Internal
+public class ScriptMetrics {
+
+    final LatencyHistogram latency = new LatencyHistogram();
+    final LatencyHistogram queueWait = new LatencyHistogram();
+    final LatencyHistogram execution = new LatencyHistogram();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final LongAdder errors = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder cancelled = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LongAdder bytesReceived = new LongAdder();
+
+    /**
+     * From submission until the results were ready, for scripts that completed, successfully or not.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * From submission until the script was sent to the backend.
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * From being sent to the backend until the results were ready.
+     */
+    public LatencyHistogram getExecution() {
+        return execution;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    void reset() {
+        latency.reset();
+        queueWait.reset();
+        execution.reset();
+        errors.reset();
+        timeouts.reset();
+        cancelled.reset();
+        bytesSent.reset();
+        bytesReceived.reset();
+    }
+}
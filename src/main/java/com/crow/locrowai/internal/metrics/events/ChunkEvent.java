@@ -0,0 +1,36 @@
+package com.crow.locrowai.internal.metrics.events;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * One chunk of an offloaded script or result being sent or received.
+ */
+@ApiStatus.Internal
+@Name("locrowai.Chunk")
+@Label("Offload Chunk")
+@Category({"Locrow AI", "Offloading"})
+@Description("One chunk of an offloaded script or result being sent or received")
+public class ChunkEvent extends Event {
+
+    @Label("Mod")
+    public String mod;
+
+    @Label("Job")
+    public String job;
+
+    @Label("Kind")
+    @Description("execute or result")
+    public String kind;
+
+    @Label("Direction")
+    public String direction;
+
+    @Label("Remaining")
+    @Description("Chunks left in the transfer, counting this one")
+    public int remaining;
+
+    @Label("Size")
+    @DataAmount
+    public int bytes;
+}
@@ -0,0 +1,25 @@
+package com.crow.locrowai.internal.metrics.events;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Checking one backend file against the hash in its manifest.
+ */
+@ApiStatus.Internal
+@Name("locrowai.HashVerification")
+@Label("Hash Verification")
+@Category({"Locrow AI", "Installation"})
+@Description("Checking one backend file against the hash in its manifest")
+public class HashVerificationEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Matched")
+    public boolean matched;
+}
@@ -0,0 +1,18 @@
+package com.crow.locrowai.internal.metrics.events;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * One stage of installing or verifying the backend.
+ */
+@ApiStatus.Internal
+@Name("locrowai.InstallStage")
+@Label("Install Stage")
+@Category({"Locrow AI", "Installation"})
+@Description("One stage of installing or verifying the AI backend")
+public class InstallStageEvent extends Event {
+
+    @Label("Stage")
+    public String stage;
+}
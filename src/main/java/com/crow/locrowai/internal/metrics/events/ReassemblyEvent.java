@@ -0,0 +1,42 @@
+package com.crow.locrowai.internal.metrics.events;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Joining the chunks of an offloaded script or result once the last one arrived.
+ */
+@ApiStatus.Internal
+@Name("locrowai.Reassembly")
+@Label("Offload Reassembly")
+@Category({"Locrow AI", "Offloading"})
+@Description("Joining and unpacking the chunks of an offloaded script or result")
+public class ReassemblyEvent extends Event {
+
+    @Label("Mod")
+    public String mod;
+
+    @Label("Job")
+    public String job;
+
+    @Label("Kind")
+    @Description("execute or result")
+    public String kind;
+
+    @Label("Chunks")
+    public int chunks;
+
+    @Label("Transfer Time")
+    @Description("Time from the first chunk arriving until the last")
+    @Timespan(Timespan.NANOSECONDS)
+    public long transferTime;
+
+    @Label("Compressed Size")
+    @DataAmount
+    public long compressedBytes;
+
+    @Label("Size")
+    @Description("Size once unpacked, or -1 if it is unpacked later")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,41 @@
+package com.crow.locrowai.internal.metrics.events;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * A script, from being submitted until its results were read. Committed once the caller's results are decoded,
+ * so the duration and bytes received include reading the response body.
+ */
+@ApiStatus.Internal
+@Name("locrowai.ScriptExecution")
+@Label("Script Execution")
+@Category({"Locrow AI", "Scripts"})
+@Description("A script from submission until its results were read")
+public class ScriptExecutionEvent extends Event {
+
+    @Label("Mod")
+    public String mod;
+
+    @Label("Calls")
+    @Description("The call IDs the script uses")
+    public String calls;
+
+    @Label("Queue Wait")
+    @Description("Time spent waiting before the script was sent to the backend")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWait;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    public long bytesSent;
+
+    @Label("Bytes Received")
+    @Description("Result bytes read, after decompression for offloaded scripts")
+    @DataAmount
+    public long bytesReceived;
+
+    @Label("Outcome")
+    @Description("completed, failed, timed out or cancelled")
+    public String outcome;
+}
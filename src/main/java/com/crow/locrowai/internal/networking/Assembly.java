@@ -0,0 +1,75 @@
+package com.crow.locrowai.internal.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The chunks of one transfer received so far. Chunks count down: the first one sent carries
+ * {@code remaining == total} and the last one carries {@code remaining == 1}.
+ */
+final class Assembly {
+    final int total;
+    final byte[][] chunks;
+    final long started = System.nanoTime();
+    int received;
+
+    /**
+     * Whether a transfer of {@code total} chunks could stay within {@code maxBytes}, checked before any room is
+     * set aside for it.
+     */
+    static boolean fits(int total, long maxBytes) {
+        return total > 0 && (long) (total - 1) * ChunkSender.CHUNK_SIZE < maxBytes;
+    }
+
+    Assembly(int total) {
+        this.total = total;
+        this.chunks = new byte[total][];
+        this.received = 0;
+    }
+
+    /**
+     * Stores a chunk. Returns false if it does not belong to this transfer or was already received.
+     */
+    boolean add(int remaining, byte[] data) {
+        if (remaining < 1 || remaining > total) return false;
+        if (chunks[total - remaining] != null) return false;
+
+        chunks[total - remaining] = data;
+        received++;
+        return true;
+    }
+
+    boolean isComplete() {
+        return received == total;
+    }
+
+    long getBytes() {
+        long bytes = 0;
+        for (byte[] chunk : chunks)
+            if (chunk != null) bytes += chunk.length;
+        return bytes;
+    }
+
+    byte[] join() {
+        int totalBytes = Arrays.stream(chunks).mapToInt(p -> p.length).sum();
+        byte[] joined = new byte[totalBytes];
+        int pos = 0;
+        for (byte[] p : chunks) {
+            System.arraycopy(p, 0, joined, pos, p.length);
+            pos += p.length;
+        }
+        return joined;
+    }
+
+    /**
+     * Joins and decompresses the transfer, reading at most {@code maxBytes + 1} bytes so a small compressed
+     * transfer cannot expand into an unbounded one. A result longer than {@code maxBytes} means it was cut off.
+     */
+    byte[] unpack(long maxBytes) throws IOException {
+        try (GZIPInputStream gin = new GZIPInputStream(new ByteArrayInputStream(join()))) {
+            return gin.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBytes + 1));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.crow.locrowai.internal.networking;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+class CancelPacket {
+    private final String MODID;
+    private final UUID uuid;
+
+    CancelPacket(String MODID, UUID uuid) {
+        this.MODID = MODID;
+        this.uuid = uuid;
+    }
+
+    CancelPacket(FriendlyByteBuf buf) {
+        this.MODID = buf.readUtf();
+        this.uuid = buf.readUUID();
+    }
+
+    void toBytes(FriendlyByteBuf buf) {
+        buf.writeUtf(MODID);
+        buf.writeUUID(uuid);
+    }
+
+    void handle(Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> ExecuteChunkReceiver.onCancel(MODID, uuid));
+        ctx.get().setPacketHandled(true);
+    }
+}
@@ -1,72 +1,117 @@
 package com.crow.locrowai.internal.networking;
 
+import com.crow.locrowai.internal.metrics.Metrics;
+import com.crow.locrowai.internal.metrics.events.ChunkEvent;
 import net.minecraftforge.network.PacketDistributor;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.zip.GZIPOutputStream;
 
 @ApiStatus.Internal
 public class ChunkSender {
 
+    static final int CHUNK_SIZE = 24_000;
+
     public static void sendResult(String MODID, UUID uuid, String json) {
-        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> chunks = split(compress(json));
 
-        try (ByteArrayOutputStream bout = new ByteArrayOutputStream();
-             GZIPOutputStream gzOut = new GZIPOutputStream(bout)) {
-            gzOut.write(bytes);
-            gzOut.finish();
-            bytes = bout.toByteArray();
-        } catch (Exception ignored) {
+        for (int i = 0; i < chunks.size(); i++) {
+            int remaining = chunks.size() - i;
+            byte[] slice = chunks.get(i);
 
+            ChunkEvent event = chunkEvent(MODID, uuid, "result", "sent", remaining, slice.length);
+            ModNetwork.CHANNEL.send(
+                    PacketDistributor.SERVER.noArg(),
+                    new ResultChunkPacket(MODID, uuid, remaining, slice)
+            );
+            event.commit();
+            Metrics.chunk("result", Metrics.Direction.SENT, slice.length);
         }
+    }
 
-        int chunkSize = 24_000;
-        int total = (bytes.length + chunkSize - 1)/chunkSize;
+    /**
+     * Compress and send a large script as chunks to the server.
+     */
+    public static void sendExecute(byte[] script, String MODID, UUID uuid) {
+        List<byte[]> chunks = split(compress(script));
 
-        for (int i = 0; i < total; i++) {
-            int off = i * chunkSize;
-            int len = Math.min(chunkSize, bytes.length - off);
-            byte[] slice = Arrays.copyOfRange(bytes, off, off + len);
+        for (int i = 0; i < chunks.size(); i++) {
+            int remaining = chunks.size() - i;
+            byte[] slice = chunks.get(i);
 
+            // Send each chunk
+            ChunkEvent event = chunkEvent(MODID, uuid, "execute", "sent", remaining, slice.length);
             ModNetwork.CHANNEL.send(
                     PacketDistributor.SERVER.noArg(),
-                    new ResultChunkPacket(MODID, uuid, total - i, slice)
+                    new ExecuteChunkPacket(MODID, uuid, remaining, slice)
             );
+            event.commit();
+            Metrics.chunk("execute", Metrics.Direction.SENT, slice.length);
         }
     }
 
-    /**
-     * Compress and send a large script as chunks to the server.
-     */
-    public static void sendExecute(String script, String MODID, UUID uuid) {
-        byte[] bytes = script.getBytes(StandardCharsets.UTF_8);
+    static byte[] compress(String json) {
+        return compress(json.getBytes(StandardCharsets.UTF_8));
+    }
 
-        // Compress using GZIP
+    static byte[] compress(byte[] json) {
         try (ByteArrayOutputStream bout = new ByteArrayOutputStream();
              GZIPOutputStream gzOut = new GZIPOutputStream(bout)) {
-            gzOut.write(bytes);
+            gzOut.write(json);
             gzOut.finish();
-            bytes = bout.toByteArray();
-        } catch (Exception ignored) {}
+            return bout.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // Split into chunks
-        int chunkSize = 24_000; // same as ResultSender
-        int total = (bytes.length + chunkSize - 1) / chunkSize;
+    /**
+     * Splits a payload into packet sized chunks, in the order they are sent.
+     */
+    static List<byte[]> split(byte[] bytes) {
+        int total = (bytes.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<byte[]> chunks = new ArrayList<>(total);
 
         for (int i = 0; i < total; i++) {
-            int off = i * chunkSize;
-            int len = Math.min(chunkSize, bytes.length - off);
-            byte[] slice = Arrays.copyOfRange(bytes, off, off + len);
+            int off = i * CHUNK_SIZE;
+            chunks.add(Arrays.copyOfRange(bytes, off, Math.min(bytes.length, off + CHUNK_SIZE)));
+        }
 
-            // Send each chunk
-            ModNetwork.CHANNEL.send(
-                    net.minecraftforge.network.PacketDistributor.SERVER.noArg(),
-                    new ExecuteChunkPacket(MODID, uuid, total - i, slice)
-            );
+        return chunks;
+    }
+
+    /**
+     * A started {@link ChunkEvent}, to be committed once the chunk has been handled.
+     */
+    static ChunkEvent chunkEvent(String MODID, UUID uuid, String kind, String direction, int remaining, int bytes) {
+        ChunkEvent event = new ChunkEvent();
+        event.begin();
+        if (event.isEnabled()) {
+            event.mod = MODID;
+            event.job = uuid.toString();
+            event.kind = kind;
+            event.direction = direction;
+            event.remaining = remaining;
+            event.bytes = bytes;
         }
+        return event;
+    }
+
+    /**
+     * Tell the volunteer to drop an offloaded script, whether it is still arriving or already running.
+     */
+    public static void sendCancel(String MODID, UUID uuid) {
+        ModNetwork.CHANNEL.send(
+                PacketDistributor.SERVER.noArg(),
+                new CancelPacket(MODID, uuid)
+        );
     }
 }
@@ -1,75 +1,99 @@
 package com.crow.locrowai.internal.networking;
 
 import com.crow.locrowai.api.runtime.exceptions.AIRuntimeException;
+import com.crow.locrowai.internal.Config;
 import com.crow.locrowai.internal.LocrowAI;
 import com.crow.locrowai.api.registration.AIRegistry;
 import com.crow.locrowai.api.runtime.Script;
 import com.crow.locrowai.internal.backend.InstallationManager;
 import com.crow.locrowai.internal.backend.LoadManager;
+import com.crow.locrowai.internal.metrics.Metrics;
+import com.crow.locrowai.internal.metrics.events.ChunkEvent;
+import com.crow.locrowai.internal.metrics.events.ReassemblyEvent;
+import com.crow.locrowai.internal.runtime.JobRegistry;
+import com.google.gson.JsonObject;
 import net.minecraftforge.network.PacketDistributor;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.zip.GZIPInputStream;
 
 class ExecuteChunkReceiver {
 
-    private static final Map<UUID, Assembly> INFLIGHT = new ConcurrentHashMap<>();
+    private static final JobRegistry<Assembly> INFLIGHT = new JobRegistry<>(
+            () -> Duration.ofSeconds(Config.offloadExpiry),
+            () -> Config.offloadMaxOutstanding,
+            () -> Config.offloadMaxTransferBytes,
+            (id, asm) -> LocrowAI.LOGGER().warn("Dropped offloaded script {} after it stopped arriving", id)
+    );
+    private static final Map<UUID, CompletableFuture<JsonObject>> RUNNING = new ConcurrentHashMap<>();
 
-    private static final class Assembly {
-        final int total;
-        final byte[][] chunks;
-        int received;
-
-        Assembly(int total) {
-            this.total = total;
-            this.chunks = new byte[total][];
-            this.received = 0;
+    static void onChunk(String MODID, UUID id, int remaining, byte[] data) {
+        Metrics.chunk("execute", Metrics.Direction.RECEIVED, data.length);
+        ChunkEvent event = ChunkSender.chunkEvent(MODID, id, "execute", "received", remaining, data.length);
+        try {
+            receive(MODID, id, remaining, data);
+        } finally {
+            event.commit();
         }
     }
 
-    static void onChunk(String MODID, UUID id, int remaining, byte[] data) {
-        Assembly asm = INFLIGHT.compute(id, (k, v) -> v == null ? new Assembly(remaining) : v);
+    private static void receive(String MODID, UUID id, int remaining, byte[] data) {
+        if (INFLIGHT.get(id) == null && !Assembly.fits(remaining, Config.offloadMaxTransferBytes)) {
+            reject(MODID, id, "The offloaded script is larger than offloadMaxTransferSize allows.");
+            return;
+        }
 
-        if (asm.chunks[asm.total - remaining] == null) {
-            asm.chunks[asm.total - remaining] = data;
-            asm.received++;
+        Assembly asm = INFLIGHT.computeIfAbsent(id, () -> new Assembly(remaining));
+        if (asm == null) {
+            reject(MODID, id, "Too many offloaded scripts are arriving at once.");
+            return;
         }
 
-        if (asm.received == asm.total) {
+        if (!asm.add(remaining, data)) return;
+
+        if (!INFLIGHT.charge(id, data.length)) {
             INFLIGHT.remove(id);
+            reject(MODID, id, "Offloaded scripts arriving at once exceed offloadMaxTransferSize.");
+            return;
+        }
+        INFLIGHT.touch(id);
 
-            int totalBytes = Arrays.stream(asm.chunks).mapToInt(p -> p.length).sum();
-            byte[] joined = new byte[totalBytes];
-            int pos = 0;
-            for (byte[] p : asm.chunks) {
-                System.arraycopy(p, 0, joined, pos, p.length);
-                pos += p.length;
-            }
+        if (asm.isComplete()) {
+            INFLIGHT.remove(id);
 
-            byte[] payload = joined;
+            ReassemblyEvent reassembly = reassemblyEvent(MODID, id, asm);
+            byte[] payload;
 
-            try (GZIPInputStream gin = new GZIPInputStream(new ByteArrayInputStream(joined))) {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                gin.transferTo(out);
-                payload = out.toByteArray();
+            try {
+                payload = asm.unpack(Config.offloadMaxTransferBytes);
+                reassembly.bytes = payload.length;
+                if (payload.length > Config.offloadMaxTransferBytes) {
+                    reject(MODID, id, "The offloaded script is larger than offloadMaxTransferSize allows.");
+                    return;
+                }
             } catch (Exception e) {
                 LocrowAI.LOGGER().error("GUnzip failed for {}", id, e);
                 return;
+            } finally {
+                reassembly.commit();
             }
 
             String script = new String(payload, StandardCharsets.UTF_8);
 
             if (LoadManager.isRunning()) {
-                AIRegistry.getContext(MODID).execute(new Script(null, script))
+                CompletableFuture<JsonObject> running = AIRegistry.getContext(MODID).execute(new Script(null, script));
+                RUNNING.put(id, running);
+
+                running.whenComplete((results, err) -> RUNNING.remove(id))
                         .thenAccept(results ->
-                                ChunkSender.sendResult(MODID, id, results.getAsString()))
+                                ChunkSender.sendResult(MODID, id, results.toString()))
                         .exceptionally(err -> {
+                            if (running.isCancelled()) return null;
+
                             ModNetwork.CHANNEL.send(
                                     PacketDistributor.SERVER.noArg(),
                                     new OffloadErrorPacket(MODID, id, err.getClass().getSimpleName(), err.getMessage())
@@ -85,4 +109,34 @@ class ExecuteChunkReceiver {
             }
         }
     }
+
+    private static void reject(String MODID, UUID id, String reason) {
+        LocrowAI.LOGGER().warn("Rejected offloaded script {}: {}", id, reason);
+        ModNetwork.CHANNEL.send(
+                PacketDistributor.SERVER.noArg(),
+                new OffloadErrorPacket(MODID, id, "AIBackendBusyException", reason)
+        );
+    }
+
+    static void onCancel(String MODID, UUID id) {
+        INFLIGHT.remove(id);
+
+        CompletableFuture<JsonObject> running = RUNNING.remove(id);
+        if (running != null) running.cancel(true);
+    }
+
+    private static ReassemblyEvent reassemblyEvent(String MODID, UUID id, Assembly asm) {
+        ReassemblyEvent event = new ReassemblyEvent();
+        event.begin();
+        if (event.isEnabled()) {
+            event.mod = MODID;
+            event.job = id.toString();
+            event.kind = "execute";
+            event.chunks = asm.total;
+            event.transferTime = System.nanoTime() - asm.started;
+            event.compressedBytes = asm.getBytes();
+            event.bytes = -1;
+        }
+        return event;
+    }
 }
@@ -16,7 +16,7 @@ import java.util.Optional;
 
 @Mod.EventBusSubscriber(modid = LocrowAI.MODID, bus = Mod.EventBusSubscriber.Bus.MOD)
 class ModNetwork {
-    private static final String PROTOCOL_VERSION = "1";
+    private static final String PROTOCOL_VERSION = "2";
     static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
             ResourceLocation.fromNamespaceAndPath(LocrowAI.MODID, "main"),
             () -> PROTOCOL_VERSION,
@@ -46,6 +46,13 @@ class ModNetwork {
                 OffloadErrorPacket::handle,
                 Optional.of(NetworkDirection.PLAY_TO_SERVER)
         );
+
+        // New packets go last, so the ones above keep their discriminators.
+        CHANNEL.registerMessage(id++, CancelPacket.class,
+                CancelPacket::toBytes,
+                CancelPacket::new,
+                CancelPacket::handle
+        );
     }
 
     @SubscribeEvent
@@ -1,76 +1,104 @@
 package com.crow.locrowai.internal.networking;
 
+import com.crow.locrowai.api.runtime.exceptions.AIBackendException;
+import com.crow.locrowai.internal.Config;
 import com.crow.locrowai.internal.LocrowAI;
 import com.crow.locrowai.api.registration.AIRegistry;
-import com.google.gson.JsonParser;
-import org.jetbrains.annotations.ApiStatus;
+import com.crow.locrowai.internal.metrics.Metrics;
+import com.crow.locrowai.internal.metrics.events.ChunkEvent;
+import com.crow.locrowai.internal.metrics.events.ReassemblyEvent;
+import com.crow.locrowai.internal.runtime.JobRegistry;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.Map;
+import java.time.Duration;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.zip.GZIPInputStream;
 
 class ResultChunkReceiver {
 
-    private static final Map<UUID, Assembly> INFLIGHT = new ConcurrentHashMap<>();
+    private static final JobRegistry<Assembly> INFLIGHT = new JobRegistry<>(
+            () -> Duration.ofSeconds(Config.offloadExpiry),
+            () -> Config.offloadMaxOutstanding,
+            () -> Config.offloadMaxTransferBytes,
+            (id, asm) -> LocrowAI.LOGGER().warn("Dropped the result for {} after it stopped arriving", id)
+    );
 
-    private static final class Assembly {
-        final int total;
-        final byte[][] chunks;
-        int received;
-
-        Assembly(int total) {
-            this.total = total;
-            this.chunks = new byte[total][];
-            this.received = 0;
+    static void onChunk(String MODID, UUID id, int remaining, byte[] data) {
+        Metrics.chunk("result", Metrics.Direction.RECEIVED, data.length);
+        ChunkEvent event = ChunkSender.chunkEvent(MODID, id, "result", "received", remaining, data.length);
+        try {
+            receive(MODID, id, remaining, data);
+        } finally {
+            event.commit();
         }
     }
 
-    static void onChunk(String MODID, UUID id, int remaining, byte[] data) {
-
-        Assembly asm = INFLIGHT.compute(id, (k, v) -> {
-            if (v == null) return new Assembly(remaining);
-            return v;
-        });
+    private static void receive(String MODID, UUID id, int remaining, byte[] data) {
+        if (INFLIGHT.get(id) == null && !Assembly.fits(remaining, Config.offloadMaxTransferBytes)) {
+            reject(MODID, id, "The offloaded result is larger than offloadMaxTransferSize allows.");
+            return;
+        }
 
-        if (asm.chunks[asm.total - remaining] == null) {
-            asm.chunks[asm.total - remaining] = data;
-            asm.received++;
+        Assembly asm = INFLIGHT.computeIfAbsent(id, () -> new Assembly(remaining));
+        if (asm == null) {
+            reject(MODID, id, "Too many offloaded results are arriving at once.");
+            return;
         }
 
-        if (asm.received == asm.total) {
-            INFLIGHT.remove(id);
+        if (!asm.add(remaining, data)) return;
 
-            int totalBytes = Arrays.stream(asm.chunks).mapToInt(p -> p.length).sum();
+        if (!INFLIGHT.charge(id, data.length)) {
+            INFLIGHT.remove(id);
+            reject(MODID, id, "Offloaded results arriving at once exceed offloadMaxTransferSize.");
+            return;
+        }
+        INFLIGHT.touch(id);
 
-            byte[] joined = new byte[totalBytes];
-            int pos = 0;
-            for (byte[] p : asm.chunks) {
-                System.arraycopy(p, 0, joined, pos, p.length);
-                pos += p.length;
-            }
+        if (asm.isComplete()) {
+            INFLIGHT.remove(id);
 
-            byte[] payload = joined;
+            ReassemblyEvent reassembly = reassemblyEvent(MODID, id, asm);
+            byte[] results;
 
-            try (GZIPInputStream gin = new GZIPInputStream(new ByteArrayInputStream(joined))) {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                gin.transferTo(out);
-                payload = out.toByteArray();
+            try {
+                results = asm.unpack(Config.offloadMaxTransferBytes);
+                reassembly.bytes = results.length;
+                if (results.length > Config.offloadMaxTransferBytes) {
+                    reject(MODID, id, "The offloaded result is larger than offloadMaxTransferSize allows.");
+                    return;
+                }
             } catch (Exception e) {
                 LocrowAI.LOGGER().error("GUnzip failed for {}", id, e);
+                reject(MODID, id, "The offloaded result could not be decompressed.");
                 return;
+            } finally {
+                reassembly.commit();
             }
 
             try {
-                String json = new String(payload, StandardCharsets.UTF_8);
-                AIRegistry.getContext(MODID).finish(JsonParser.parseString(json).getAsJsonObject(), id);
+                AIRegistry.getContext(MODID).finish(new ByteArrayInputStream(results), id);
             } catch (Exception e) {
-                LocrowAI.LOGGER().error("Result parse/finish failed for {}", id, e);
+                LocrowAI.LOGGER().error("Result finish failed for {}", id, e);
             }
         }
     }
+
+    private static void reject(String MODID, UUID id, String reason) {
+        LocrowAI.LOGGER().warn("Rejected the result for {}: {}", id, reason);
+        AIRegistry.getContext(MODID).error(new AIBackendException(reason), id);
+    }
+
+    private static ReassemblyEvent reassemblyEvent(String MODID, UUID id, Assembly asm) {
+        ReassemblyEvent event = new ReassemblyEvent();
+        event.begin();
+        if (event.isEnabled()) {
+            event.mod = MODID;
+            event.job = id.toString();
+            event.kind = "result";
+            event.chunks = asm.total;
+            event.transferTime = System.nanoTime() - asm.started;
+            event.compressedBytes = asm.getBytes();
+            event.bytes = -1;
+        }
+        return event;
+    }
 }
@@ -0,0 +1,56 @@
+package com.crow.locrowai.internal.runtime;
+
+import com.crow.locrowai.api.runtime.exceptions.ScriptTimeoutException;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@ApiStatus.Internal
+public class Cancellation {
+
+    static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "Locrow-AI-Timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // Cancelled timers leave the queue at once instead of holding what they refer to until they were due.
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Runs {@code action} if {@code future} ends up cancelled. CompletableFuture never passes cancellation back to
+     * the stages it was derived from, so each layer uses this to hand it to the work underneath.
+     */
+    public static void onCancel(CompletableFuture<?> future, Runnable action) {
+        future.whenComplete((result, err) -> {
+            if (future.isCancelled()) action.run();
+        });
+    }
+
+    /**
+     * Fails {@code future} with a {@link ScriptTimeoutException} if it has not completed within {@code deadline},
+     * then runs {@code action} to stop the work behind it. A null deadline never expires.
+     */
+    public static void onTimeout(CompletableFuture<?> future, Duration deadline, Runnable action) {
+        if (deadline == null) return;
+
+        expireAfter(future, deadline, () -> {
+            if (future.completeExceptionally(new ScriptTimeoutException(deadline))) action.run();
+        });
+    }
+
+    /**
+     * Runs {@code expire} once {@code delay} has passed, unless {@code future} completes first. The timer is
+     * cancelled as soon as the future completes, so neither stays reachable for the rest of the delay.
+     */
+    public static void expireAfter(CompletableFuture<?> future, Duration delay, Runnable expire) {
+        ScheduledFuture<?> scheduled = timer.schedule(expire, delay.toMillis(), TimeUnit.MILLISECONDS);
+        future.whenComplete((result, err) -> scheduled.cancel(false));
+    }
+}
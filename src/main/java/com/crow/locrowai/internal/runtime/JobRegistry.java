@@ -0,0 +1,157 @@
+package com.crow.locrowai.internal.runtime;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Jobs that are waiting on something outside this JVM, such as an offloaded script or a half received transfer.
+ * Every job expires if it is not answered (or {@link #touch touched}) in time, and a background sweep drops
+ * expired jobs, so entries for volunteers that disconnected or never replied do not pile up forever. The number
+ * of jobs and the bytes they hold are both capped.
+ */
+@ApiStatus.Internal
+public class JobRegistry<V> {
+
+    private static final List<JobRegistry<?>> registries = new CopyOnWriteArrayList<>();
+
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Locrow-AI-Job-Sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        sweeper.scheduleWithFixedDelay(() -> registries.forEach(JobRegistry::sweep), 5, 5, TimeUnit.SECONDS);
+    }
+
+    private static final class Job<V> {
+        final V value;
+        final Duration expiry;
+        volatile long expiresAt;
+        final AtomicLong bytes = new AtomicLong();
+
+        Job(V value, Duration expiry) {
+            this.value = value;
+            this.expiry = expiry;
+            this.expiresAt = System.nanoTime() + expiry.toNanos();
+        }
+    }
+
+    private final Map<UUID, Job<V>> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Supplier<Duration> expiry;
+    private final IntSupplier maxJobs;
+    private final LongSupplier maxBytes;
+    private final BiConsumer<UUID, V> onExpire;
+
+    /**
+     * @param expiry   how long a job may go without being answered or touched
+     * @param maxJobs  how many jobs may be outstanding at once
+     * @param maxBytes how many bytes all jobs together may {@link #charge}
+     * @param onExpire called with each job that expired, after it was removed
+     */
+    public JobRegistry(Supplier<Duration> expiry, IntSupplier maxJobs, LongSupplier maxBytes, BiConsumer<UUID, V> onExpire) {
+        this.expiry = expiry;
+        this.maxJobs = maxJobs;
+        this.maxBytes = maxBytes;
+        this.onExpire = onExpire;
+
+        registries.add(this);
+    }
+
+    public boolean put(UUID id, V value) {
+        return put(id, value, null);
+    }
+
+    /**
+     * Adds a job, unless as many as allowed are already outstanding. A null {@code expiry} uses the registry's.
+     */
+    public boolean put(UUID id, V value, Duration expiry) {
+        if (jobs.size() >= maxJobs.getAsInt()) return false;
+
+        Job<V> previous = jobs.put(id, new Job<>(value, expiry == null ? this.expiry.get() : expiry));
+        if (previous != null) bytes.addAndGet(-previous.bytes.get());
+        return true;
+    }
+
+    /**
+     * The job's value, creating it with {@code factory} if it is new. Null if a new job would be one too many.
+     */
+    public V computeIfAbsent(UUID id, Supplier<V> factory) {
+        Job<V> job = jobs.get(id);
+        if (job != null) return job.value;
+
+        if (jobs.size() >= maxJobs.getAsInt()) return null;
+        return jobs.computeIfAbsent(id, key -> new Job<>(factory.get(), expiry.get())).value;
+    }
+
+    public V get(UUID id) {
+        Job<V> job = jobs.get(id);
+        return job == null ? null : job.value;
+    }
+
+    public V remove(UUID id) {
+        Job<V> job = jobs.remove(id);
+        if (job == null) return null;
+
+        bytes.addAndGet(-job.bytes.get());
+        return job.value;
+    }
+
+    /**
+     * Pushes the job's expiry back, e.g. because another piece of it just arrived.
+     */
+    public void touch(UUID id) {
+        Job<V> job = jobs.get(id);
+        if (job != null) job.expiresAt = System.nanoTime() + job.expiry.toNanos();
+    }
+
+    /**
+     * Records that the job now holds {@code amount} more bytes. Returns false, without recording them, if that
+     * would take every job together over the byte cap.
+     */
+    public boolean charge(UUID id, long amount) {
+        Job<V> job = jobs.get(id);
+        if (job == null) return false;
+
+        long limit = maxBytes.getAsLong();
+        long total;
+        do {
+            total = bytes.get();
+            if (total + amount > limit) return false;
+        } while (!bytes.compareAndSet(total, total + amount));
+
+        job.bytes.addAndGet(amount);
+        return true;
+    }
+
+    public int size() {
+        return jobs.size();
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+
+    void sweep() {
+        long now = System.nanoTime();
+
+        jobs.forEach((id, job) -> {
+            if (now - job.expiresAt < 0) return;
+            if (!jobs.remove(id, job)) return;
+
+            bytes.addAndGet(-job.bytes.get());
+            onExpire.accept(id, job.value);
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.crow.locrowai.internal.runtime;
+
+import com.crow.locrowai.internal.Config;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of script results, keyed by blueprint hash. Entries expire after the TTL their script asked for, and
+ * the least recently used entries are evicted once the total size passes the configured budget.
+ */
+@ApiStatus.Internal
+public class ResultCache {
+
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {}
+
+    private record Entry(JsonObject results, long bytes, long expiresAt) {}
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Returns a private copy of the cached results, or null on a miss.
+     */
+    public synchronized JsonObject get(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+            remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.results.deepCopy();
+    }
+
+    /**
+     * @param size how many bytes the backend sent for {@code results}, which stands in for their retained size.
+     */
+    public synchronized void put(String key, JsonObject results, long size, Duration ttl) {
+        long budget = Config.resultCacheBytes;
+
+        if (size > budget || ttl.isNegative() || ttl.isZero()) return;
+
+        remove(key);
+        entries.put(key, new Entry(results.deepCopy(), size, System.nanoTime() + ttl.toNanos()));
+        bytes += size;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > budget && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) bytes -= old.bytes;
+    }
+}
@@ -0,0 +1,106 @@
+package com.crow.locrowai.internal.runtime;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses identical concurrent work into one execution. Callers that arrive with a key that is already in
+ * flight wait on that execution instead of starting their own, and each of them gets its own future.
+ */
+@ApiStatus.Internal
+public class SingleFlight<V> {
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        // Guarded by the flight itself, so joining and the last waiter leaving cannot interleave.
+        int waiters = 0;
+        int active = 0;
+        boolean abandoned = false;
+    }
+
+    private final Map<String, Flight<V>> inflight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copy;
+
+    /**
+     * @param copy used to hand every waiter its own copy of a shared result, so no caller can see another's
+     *             changes to it. Results with a single waiter are passed through as-is.
+     */
+    public SingleFlight(UnaryOperator<V> copy) {
+        this.copy = copy;
+    }
+
+    public CompletableFuture<V> execute(String key, Supplier<CompletableFuture<V>> task) {
+        while (true) {
+            Flight<V> created = new Flight<>();
+            Flight<V> flight = inflight.putIfAbsent(key, created);
+
+            if (flight == null) {
+                flight = created;
+                start(key, created, task);
+            }
+
+            synchronized (flight) {
+                // Joining a flight every other waiter has abandoned, or one that has already finished, would only
+                // hand back its cancellation or a result someone else may be changing, so start a new one instead.
+                if (flight != created && (flight.abandoned || flight.result.isDone())) {
+                    inflight.remove(key, flight);
+                    continue;
+                }
+
+                flight.waiters++;
+                flight.active++;
+            }
+
+            return join(key, flight);
+        }
+    }
+
+    private void start(String key, Flight<V> flight, Supplier<CompletableFuture<V>> task) {
+        try {
+            CompletableFuture<V> running = task.get();
+            Cancellation.onCancel(flight.result, () -> running.cancel(true));
+
+            running.whenComplete((result, err) -> {
+                inflight.remove(key, flight);
+                if (err == null)
+                    flight.result.complete(result);
+                else
+                    flight.result.completeExceptionally(err);
+            });
+        } catch (Throwable e) {
+            inflight.remove(key, flight);
+            flight.result.completeExceptionally(e);
+        }
+    }
+
+    private CompletableFuture<V> join(String key, Flight<V> flight) {
+        // Nobody joins a finished flight, so the waiter count is final by the time this runs.
+        CompletableFuture<V> waiter = flight.result.thenApply(result -> {
+            synchronized (flight) {
+                if (flight.waiters == 1) return result;
+            }
+            return copy.apply(result);
+        });
+
+        // The shared execution is only cancelled once every caller waiting on it has given up.
+        Cancellation.onCancel(waiter, () -> {
+            synchronized (flight) {
+                if (--flight.active > 0) return;
+                flight.abandoned = true;
+                inflight.remove(key, flight);
+            }
+            flight.result.cancel(true);
+        });
+
+        return waiter;
+    }
+
+    public int size() {
+        return inflight.size();
+    }
+}
@@ -0,0 +1,78 @@
+from __future__ import annotations
+from collections import OrderedDict
+from contextlib import contextmanager
+from contextvars import ContextVar
+from threading import Event, Lock
+from typing import Optional
+import time
+
+class ScriptCancelled(Exception):
+    pass
+
+class DeadlineExceeded(ScriptCancelled):
+    pass
+
+class Job:
+    def __init__(self, job_id: Optional[str], deadline: Optional[float] = None):
+        self.job_id = job_id
+        self.deadline = deadline
+        self.cancelled = Event()
+
+_lock = Lock()
+_jobs: dict[str, Job] = {}
+
+# A cancel can overtake its script on the way in, so remember a few recent ones.
+MAX_EARLY_CANCELS = 256
+_early: OrderedDict[str, None] = OrderedDict()
+
+_current: ContextVar[Optional[Job]] = ContextVar("locrow_job", default=None)
+
+@contextmanager
+def running(job_id: Optional[str], deadline_ms: Optional[int] = None):
+    if job_id is None and deadline_ms is None:
+        yield None
+        return
+
+    deadline = time.monotonic() + deadline_ms / 1000 if deadline_ms is not None else None
+    job = Job(job_id, deadline)
+    if job_id is not None:
+        with _lock:
+            if job_id in _early:
+                del _early[job_id]
+                job.cancelled.set()
+            _jobs[job_id] = job
+
+    token = _current.set(job)
+    try:
+        yield job
+    finally:
+        _current.reset(token)
+        if job_id is not None:
+            with _lock:
+                _jobs.pop(job_id, None)
+
+def cancel(job_id: str) -> bool:
+    with _lock:
+        job = _jobs.get(job_id)
+        if job is None:
+            _early[job_id] = None
+            while len(_early) > MAX_EARLY_CANCELS:
+                _early.popitem(last=False)
+            return False
+
+    job.cancelled.set()
+    return True
+
+def check_cancelled():
+    """
+    Raise ScriptCancelled if the job running on this thread has been cancelled,
+    or DeadlineExceeded if it has run past its deadline.
+    Long running functions may call this between steps to stop early.
+    """
+    job = _current.get()
+    if job is None:
+        return
+    if job.cancelled.is_set():
+        raise ScriptCancelled(f"Job {job.job_id} was cancelled")
+    if job.deadline is not None and time.monotonic() > job.deadline:
+        raise DeadlineExceeded("Script ran past its deadline")
@@ -0,0 +1,47 @@
+from __future__ import annotations
+from pathlib import Path
+from typing import Any
+import base64
+import mmap
+import uuid
+
+# Scratch directory shared with the JVM, which sweeps it whenever the backend starts.
+SHM_DIR = Path('shm')
+
+def _resolve(name: str) -> Path:
+    path = (SHM_DIR / name).resolve()
+    if path.parent != SHM_DIR.resolve():
+        raise ValueError(f"Shared memory handle points outside of {SHM_DIR}: {name}")
+    return path
+
+def read(handle: dict[str, Any]) -> bytes:
+    length = int(handle["length"])
+    if length == 0:
+        return b""
+
+    offset = int(handle["offset"])
+    with open(_resolve(handle["path"]), 'rb') as f, mmap.mmap(f.fileno(), 0, access=mmap.ACCESS_READ) as m:
+        return m[offset:offset + length]
+
+def write(data: bytes) -> dict[str, Any]:
+    SHM_DIR.mkdir(exist_ok=True)
+    name = uuid.uuid4().hex + '.bin'
+
+    with open(SHM_DIR / name, 'wb+') as f:
+        if data:
+            f.truncate(len(data))
+            with mmap.mmap(f.fileno(), len(data)) as m:
+                m[:] = data
+
+    return {"$shm": {"path": name, "offset": 0, "length": len(data)}}
+
+def decode(value: Any) -> Any:
+    """
+    Turn an input sent by the JVM back into bytes, whether it came through shared memory or as base64.
+    """
+    if isinstance(value, dict):
+        if "$shm" in value:
+            return read(value["$shm"])
+        if "$base64" in value:
+            return base64.b64decode(value["$base64"])
+    return value
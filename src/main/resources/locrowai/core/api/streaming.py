@@ -0,0 +1,40 @@
+from __future__ import annotations
+from contextlib import contextmanager
+from contextvars import ContextVar
+from typing import Any, Callable, Optional
+
+Emitter = Callable[[str, Optional[str], dict[str, Any]], None]
+
+_emitter: ContextVar[Optional[Emitter]] = ContextVar("locrow_emitter", default=None)
+_call: ContextVar[Optional[str]] = ContextVar("locrow_call", default=None)
+
+@contextmanager
+def emitting(emitter: Emitter):
+    token = _emitter.set(emitter)
+    try:
+        yield
+    finally:
+        _emitter.reset(token)
+
+@contextmanager
+def calling(call_id: Optional[str]):
+    token = _call.set(call_id)
+    try:
+        yield
+    finally:
+        _call.reset(token)
+
+def is_streaming() -> bool:
+    return _emitter.get() is not None
+
+def emit(event: str, data: dict[str, Any]):
+    """
+    Send an event for the call running on this thread to the caller, if it asked for a stream.
+    Does nothing for scripts run through /run.
+    """
+    emitter = _emitter.get()
+    if emitter is not None:
+        emitter(event, _call.get(), data)
+
+def token(text: str):
+    emit("token", {"text": text})
@@ -1,13 +1,20 @@
 from __future__ import annotations
-from fastapi import FastAPI
-from fastapi.responses import JSONResponse
+from fastapi import FastAPI, Header
+from fastapi.responses import JSONResponse, StreamingResponse
+from starlette.concurrency import run_in_threadpool
 from pydantic import BaseModel, TypeAdapter, field_validator
 from typing import Any, List, Dict, Literal
+from concurrent.futures import ThreadPoolExecutor, as_completed
+from collections import OrderedDict
+from threading import Lock
+import asyncio
 import uuid
 import re
 import json
+import struct
 
 from api.extensions import Function, functions
+from api import jobs, shm, streaming
 import loader
 
 app = FastAPI()
@@ -42,6 +49,8 @@ class Params(BaseModel):
     vars: Dict[str, Any] | None = None
     script: List[Call]
     returns: Dict[str, str] = {}
+    deadline_ms: int | None = None
+    inputs: Dict[str, Any] | None = None
 
     @field_validator('api_version')
     @classmethod
@@ -144,6 +153,7 @@ def resolve_condition(condition: Conditional, _vars: Dict[str, Dict[str, Any]],
         for next in condition.AND:
             if not resolve_condition(next, _vars, last, current, parent):
                 return False
+        return True
     elif condition.OR is not None:
         for next in condition.OR:
             if resolve_condition(next, _vars, last, current, parent):
@@ -212,7 +222,10 @@ def execute(call: Call, _vars: Dict[str, Dict[str, Any]], last: String, parent:
 
     nxt = nxt(params=nxt.parse_params(params))
     
-    nxt.exec()
+    jobs.check_cancelled()
+    with streaming.calling(call.id):
+        nxt.exec()
+        streaming.emit("call", {"call": call.call})
     if nxt.returns is not None:
         for key, val in nxt.returns:
             _vars[call.id][key] = val
@@ -220,32 +233,198 @@ def execute(call: Call, _vars: Dict[str, Dict[str, Any]], last: String, parent:
     called.append(nxt)
     last.val = call.id
 
-@app.post('/run')
-def run(data: Params):
+def run_script(data: Params, job_id: str | None = None, attachments: dict[str, bytes] | None = None) -> dict[str, Any]:
     called: List[Function] = []
     _vars: Dict[str, Dict[str, Any]] = {}
 
     _vars['vars'] = {}
     for key, var in (data.vars or {}).items():
         _vars['vars'][key] = var
+    for key, var in (data.inputs or {}).items():
+        _vars['vars'][key] = shm.decode(var)
 
-    last = String()
-    for func in data.script:
-        resolve_func(func, _vars, last, None, called)
+    # Cleanup also runs when the script is cancelled or fails part way, so models are not left holding memory.
+    with jobs.running(job_id, data.deadline_ms):
+        try:
+            last = String()
+            for func in data.script:
+                resolve_func(func, _vars, last, None, called)
 
-    returns: dict[str, Any] = {}
+            returns: dict[str, Any] = {}
 
-    for name, script in data.returns.items():
-        returns[name] = resolve_var(script, _vars, last, None, None)
+            for name, script in data.returns.items():
+                returns[name] = resolve_var(script, _vars, last, None, None)
 
-    
-    adapter = TypeAdapter(dict[str, Any])
-    safe_returns = adapter.dump_python(returns, mode="json", serialize_as_any=True)
-    
-    for func in called:
-        func.cleanup()
+            # Byte returns travel next to the JSON instead of inside it, so they are never base64 encoded.
+            if attachments is not None:
+                for name in [name for name, value in returns.items() if isinstance(value, (bytes, bytearray, memoryview))]:
+                    attachments[name] = bytes(returns.pop(name))
+
+            adapter = TypeAdapter(dict[str, Any])
+            return adapter.dump_python(returns, mode="json", serialize_as_any=True)
+        finally:
+            for func in called:
+                func.cleanup()
 
-    return JSONResponse(safe_returns)
+@app.post('/run')
+def run(data: Params, x_locrow_job: str | None = Header(default=None)):
+    try:
+        return JSONResponse(run_script(data, x_locrow_job))
+    except jobs.ScriptCancelled as e:
+        return script_stopped(e)
+
+def script_stopped(e: jobs.ScriptCancelled) -> JSONResponse:
+    return JSONResponse({"error": str(e)}, status_code=504 if isinstance(e, jobs.DeadlineExceeded) else 409)
+
+@app.post('/run_binary')
+def run_binary(data: Params, x_locrow_job: str | None = Header(default=None), x_locrow_shm: int | None = Header(default=None)):
+    # Length-prefixed frames, all integers big-endian:
+    #   u32 json length, json results, then per attachment: u16 name length, name, u32 data length, data
+    # Attachments of at least x_locrow_shm bytes are written to shared memory and their handle goes in the json.
+    attachments: dict[str, bytes] = {}
+    try:
+        results = run_script(data, x_locrow_job, attachments)
+    except jobs.ScriptCancelled as e:
+        return script_stopped(e)
+
+    if x_locrow_shm is not None:
+        for name in [name for name, value in attachments.items() if len(value) >= x_locrow_shm]:
+            results[name] = shm.write(attachments.pop(name))
+
+    def frames():
+        body = json.dumps(results).encode()
+        yield struct.pack('>I', len(body)) + body
+        for name, value in attachments.items():
+            key = name.encode()
+            yield struct.pack('>H', len(key)) + key + struct.pack('>I', len(value))
+            yield value
+
+    return StreamingResponse(frames(), media_type="application/x-locrow-frames")
+
+@app.post('/run_stream')
+async def run_stream(data: Params, x_locrow_job: str | None = Header(default=None)):
+    # The script runs on the same bounded threadpool as /run and everything it emits is written as one line
+    # per event, so the first LLM token reaches the caller long before the script as a whole has finished.
+    loop = asyncio.get_running_loop()
+    events: asyncio.Queue = asyncio.Queue()
+    done = object()
+
+    def line(event: str, call_id: str | None, payload: dict[str, Any]):
+        loop.call_soon_threadsafe(events.put_nowait, json.dumps({"event": event, "id": call_id, "data": payload}) + "\n")
+
+    def worker():
+        try:
+            with streaming.emitting(line):
+                results = run_script(data, x_locrow_job)
+            line("result", None, results)
+        except Exception as e:
+            line("error", None, {"type": type(e).__name__, "message": str(e)})
+        finally:
+            loop.call_soon_threadsafe(events.put_nowait, done)
+
+    task = asyncio.ensure_future(run_in_threadpool(worker))
+
+    async def results():
+        try:
+            while (item := await events.get()) is not done:
+                yield item
+        finally:
+            # The caller went away before the script finished.
+            if not task.done() and x_locrow_job is not None:
+                jobs.cancel(x_locrow_job)
+
+    return StreamingResponse(results(), media_type="application/x-ndjson")
+
+# Prepared scripts are validated once and then run many times with only new vars, like prepared statements.
+# The least recently used ones are dropped past the limit and callers prepare them again on a 404.
+MAX_PREPARED = 1024
+prepared: OrderedDict[str, Params] = OrderedDict()
+prepared_lock = Lock()
+
+def assign_ids(calls: List[Call]):
+    # resolve_func names anonymous calls as it goes, which would race between runs sharing one Params.
+    for call in calls:
+        call.id = call.id or str(uuid.uuid4())
+        if call.calls is not None:
+            assign_ids(call.calls)
+
+@app.post('/prepare')
+def prepare(data: Params):
+    assign_ids(data.script)
+    handle = uuid.uuid4().hex
+    with prepared_lock:
+        prepared[handle] = data
+        while len(prepared) > MAX_PREPARED:
+            prepared.popitem(last=False)
+    return JSONResponse({"handle": handle})
+
+class PreparedParams(BaseModel):
+    vars: Dict[str, Any] | None = None
+    inputs: Dict[str, Any] | None = None
+
+@app.post('/run_prepared/{handle}')
+def run_prepared(handle: str, data: PreparedParams, x_locrow_job: str | None = Header(default=None)):
+    with prepared_lock:
+        script = prepared.get(handle)
+        if script is not None:
+            prepared.move_to_end(handle)
+    if script is None:
+        return JSONResponse({"error": f"Unknown prepared script {handle}"}, status_code=404)
+
+    params = script.model_copy(update={"vars": {**(script.vars or {}), **(data.vars or {})}, "inputs": data.inputs})
+    try:
+        return JSONResponse(run_script(params, x_locrow_job))
+    except jobs.ScriptCancelled as e:
+        return script_stopped(e)
+
+# Async, so it is answered on the event loop even while every worker thread is busy running scripts.
+@app.get('/health')
+async def health():
+    return {"status": "ok"}
+
+class CancelParams(BaseModel):
+    job_id: str
+
+@app.post('/cancel')
+def cancel(data: CancelParams):
+    return JSONResponse({"status": "cancelled" if jobs.cancel(data.job_id) else "unknown"})
+
+MAX_BATCH_WORKERS = 8
+
+class BatchParams(BaseModel):
+    scripts: List[Dict[str, Any]]
+
+def run_batch_entry(raw: Dict[str, Any]) -> dict[str, Any]:
+    return run_script(Params.model_validate(raw))
+
+def batch_error(e: Exception) -> dict[str, Any]:
+    # The same statuses /run answers with, so callers can tell a deadline from any other failure.
+    if isinstance(e, jobs.DeadlineExceeded):
+        status = 504
+    elif isinstance(e, jobs.ScriptCancelled):
+        status = 409
+    else:
+        status = 500
+    return {"type": type(e).__name__, "message": str(e), "status": status}
+
+@app.post('/run_batch')
+def run_batch(data: BatchParams):
+    # Scripts run side by side and each result is written as its own line the moment it is ready,
+    # so callers can complete their futures without waiting for the slowest script in the batch.
+    def results():
+        if not data.scripts:
+            return
+        with ThreadPoolExecutor(max_workers=min(len(data.scripts), MAX_BATCH_WORKERS)) as pool:
+            futures = {pool.submit(run_batch_entry, raw): i for i, raw in enumerate(data.scripts)}
+            for future in as_completed(futures):
+                index = futures[future]
+                try:
+                    line = {"index": index, "results": future.result()}
+                except Exception as e:
+                    line = {"index": index, "error": batch_error(e)}
+                yield json.dumps(line) + "\n"
+
+    return StreamingResponse(results(), media_type="application/x-ndjson")
 
 class FreezeParams(BaseModel):
     functions: List[str] | None = None
@@ -2,6 +2,7 @@ from pydantic import BaseModel
 from typing import List
 from api.extensions import Function, register
 from api.threading import ModelLock
+from api import jobs, streaming
 from .model_loader import get_llm
 
 
@@ -34,14 +35,27 @@ class ChatFunc(Function[ChatParams, ChatReturns]):
             for message in self.params.messages
         ]
 
-        res = llm.create_chat_completion_openai_v1(
+        # Generate token by token so streaming callers see text as it is produced, and so a cancelled
+        # or timed out script stops generating instead of finishing the whole completion.
+        chunks = llm.create_chat_completion(
             messages=messages,
             temperature=self.params.temperature,
+            stream=True,
         )
 
-        msg = res.choices[0].message
+        role = "assistant"
+        content = []
+        for chunk in chunks:
+            jobs.check_cancelled()
 
-        self.returns = ChatReturns(role=msg.role, content=msg.content)
+            delta = chunk["choices"][0]["delta"]
+            role = delta.get("role", role)
+            text = delta.get("content")
+            if text:
+                content.append(text)
+                streaming.token(text)
+
+        self.returns = ChatReturns(role=role, content="".join(content))
 
     @staticmethod
     def warmup():
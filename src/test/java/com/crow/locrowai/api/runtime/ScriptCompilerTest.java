@@ -0,0 +1,158 @@
+package com.crow.locrowai.api.runtime;
+
+import com.crow.locrowai.api.runtime.exceptions.InvalidScriptException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.crow.locrowai.api.runtime.Conditional.Operation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptCompilerTest {
+
+    private static JsonArray compiled(Call... calls) {
+        ScriptBuilder builder = new ScriptBuilder();
+        for (Call call : calls) builder.then(call);
+        return JsonParser.parseString(builder.build().getJsonBlueprint()).getAsJsonObject().getAsJsonArray("script");
+    }
+
+    private static Call guarded(Conditional condition) {
+        return new Call("guarded").call("/llm/chat").condition(condition);
+    }
+
+    /**
+     * Whether the guarded call survives compilation: true if it is sent without its condition, false if it is
+     * dropped, and null if the condition is left to the backend.
+     */
+    private static Boolean folded(Conditional condition) {
+        JsonArray script = compiled(guarded(condition));
+        if (script.isEmpty()) return false;
+        return script.get(0).getAsJsonObject().has("condition") ? null : true;
+    }
+
+    @Test
+    void literalComparisonsFold() {
+        assertEquals(true, folded(new Conditional(2, GREATER_THAN, 1)));
+        assertEquals(false, folded(new Conditional(1, GREATER_THAN, 2)));
+        assertEquals(true, folded(new Conditional("a", LESS_THAN, "b")));
+        assertEquals(true, folded(new Conditional(1.0, EQUALS, 1)));
+        assertEquals(false, folded(new Conditional("1", EQUALS, 1)));
+        assertEquals(true, folded(new Conditional(2, GREATER_THAN_EQUAL_TO, 2)));
+        assertEquals(false, folded(new Conditional(3, LESS_THAN_EQUAL_TO, 2)));
+    }
+
+    @Test
+    void booleansCompareAsNumbersLikePython() {
+        assertEquals(true, folded(new Conditional(true, EQUALS, 1)));
+        assertEquals(true, folded(new Conditional(false, LESS_THAN, 1)));
+    }
+
+    @Test
+    void stringsCompareByCodePoint() {
+        // U+FFFD sorts before U+1F600 as code points, but after its surrogate pair as UTF-16 units.
+        assertEquals(true, folded(new Conditional("\uFFFD", LESS_THAN, "\uD83D\uDE00")));
+    }
+
+    @Test
+    void membershipFolds() {
+        assertEquals(true, folded(new Conditional(2, IN, List.of(1, 2, 3))));
+        assertEquals(false, folded(new Conditional(4, IN, List.of(1, 2, 3))));
+        assertEquals(true, folded(new Conditional("ell", IN, "hello")));
+        assertEquals(true, folded(new Conditional("key", IN, Map.of("key", 1))));
+        assertNull(folded(new Conditional(1, IN, Map.of("key", 1))));
+    }
+
+    @Test
+    void truthinessFolds() {
+        assertEquals(false, folded(new Conditional(0)));
+        assertEquals(false, folded(new Conditional("")));
+        assertEquals(false, folded(new Conditional(List.of())));
+        assertEquals(true, folded(new Conditional("no")));
+        assertEquals(true, folded(new Conditional(List.of("{{ vars.x }}"))));
+    }
+
+    @Test
+    void logicFoldsAroundUnknowns() {
+        Conditional unknown = new Conditional("{{ vars.x }}", EQUALS, 1);
+
+        assertEquals(false, folded(Conditional.and(List.of(unknown, new Conditional(0)))));
+        assertEquals(true, folded(Conditional.or(List.of(unknown, new Conditional(1)))));
+        assertEquals(true, folded(Conditional.not(new Conditional(0))));
+        assertNull(folded(Conditional.and(List.of(unknown, new Conditional(1)))));
+        assertNull(folded(Conditional.not(unknown)));
+    }
+
+    @Test
+    void referencesAndSlotsAreLeftToTheBackend() {
+        assertNull(folded(new Conditional("{{ vars.x }}", GREATER_THAN, 1)));
+        assertNull(folded(new Conditional("{{ ^content }}")));
+        assertNull(folded(new Conditional(ScriptTemplate.slot("x"), EQUALS, 1)));
+        // Comparisons Python would raise on are not decided here either.
+        assertNull(folded(new Conditional("a", LESS_THAN, 1)));
+    }
+
+    @Test
+    void nestedCallsAreFolded() {
+        JsonArray script = compiled(new Call("outer")
+                .call(new Call("kept").call("/llm/chat"))
+                .call(guarded(new Conditional(false))));
+
+        JsonArray nested = script.get(0).getAsJsonObject().getAsJsonArray("calls");
+        assertEquals(1, nested.size());
+        assertEquals("kept", nested.get(0).getAsJsonObject().get("id").getAsString());
+    }
+
+    @Test
+    void callIDsOnlyCoverCallsThatAreSent() {
+        Script script = new ScriptBuilder()
+                .then(guarded(new Conditional(false)))
+                .then(new Call().call("/tts/speak"))
+                .build();
+
+        assertEquals(Set.of("/tts/speak"), script.getCallIDs());
+    }
+
+    @Test
+    void untouchedScriptsAreSentAsBuilt() {
+        JsonObject call = compiled(new Call("a").call("/llm/chat").feed("text", "{{ vars.text }}")).get(0).getAsJsonObject();
+
+        assertEquals("a", call.get("id").getAsString());
+        assertEquals("{{ vars.text }}", call.getAsJsonObject("feeds").get("text").getAsString());
+    }
+
+    @Test
+    void malformedCallIDsAreRejected() {
+        assertThrows(InvalidScriptException.class, () -> compiled(new Call().call("llm/chat")));
+        assertThrows(InvalidScriptException.class, () -> compiled(new Call().call("/llm chat")));
+    }
+
+    @Test
+    void callsWithoutAFunctionAreRejected() {
+        assertThrows(InvalidScriptException.class, () -> compiled(new Call("empty")));
+    }
+
+    @Test
+    void referencesToUnknownIdsAreRejected() {
+        assertThrows(InvalidScriptException.class,
+                () -> compiled(new Call().call("/llm/chat").feed("text", "{{ missing.content }}")));
+        assertThrows(InvalidScriptException.class,
+                () -> new ScriptBuilder().returns("out", "{{ missing.content }}").build());
+    }
+
+    @Test
+    void referencesToLaterOrNestedIdsAreAccepted() {
+        compiled(new Call().call("/llm/chat").feed("text", "{{ later.content }}"),
+                new Call("outer").call(new Call("later").call("/llm/chat")));
+        compiled(new Call().call("/llm/chat").feed("text", "{{ vars.text }} {{ ^content }} {{ ..content }}"));
+    }
+
+    @Test
+    void escapedReferencesAreNotChecked() {
+        compiled(new Call().call("/llm/chat").feed("text", "\\{{ missing.content }}"));
+    }
+}
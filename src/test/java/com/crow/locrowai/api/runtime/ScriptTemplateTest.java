@@ -0,0 +1,100 @@
+package com.crow.locrowai.api.runtime;
+
+import com.crow.locrowai.api.runtime.exceptions.InvalidScriptException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptTemplateTest {
+
+    @Test
+    void bindMatchesBuildingWithTheValues() {
+        ScriptTemplate template = new ScriptBuilder()
+                .var("voice", ScriptTemplate.slot("voice"))
+                .var("speed", 1.1)
+                .returns("messages", ScriptTemplate.slot("messages"))
+                .template();
+
+        List<Map<String, String>> messages = List.of(Map.of("role", "user", "content", "hi \"there\""));
+        Script bound = template.bind(Map.of("voice", "am_puck", "messages", messages));
+        Script built = new ScriptBuilder()
+                .var("voice", "am_puck")
+                .var("speed", 1.1)
+                .returns("messages", messages)
+                .build();
+
+        assertEquals(Set.of("voice", "messages"), template.getSlots());
+        assertEquals(built.getJsonBlueprint(), bound.getJsonBlueprint());
+        assertEquals(built.getBlueprintHash(), bound.getBlueprintHash());
+    }
+
+    @Test
+    void slotsCanBeBoundMoreThanOnce() {
+        ScriptTemplate template = new ScriptBuilder()
+                .var("a", ScriptTemplate.slot("x"))
+                .var("b", ScriptTemplate.slot("x"))
+                .template();
+
+        assertEquals(Set.of("x"), template.getSlots());
+        assertEquals(new ScriptBuilder().var("a", 2).var("b", 2).build().getJsonBlueprint(),
+                template.bind(Map.of("x", 2)).getJsonBlueprint());
+    }
+
+    @Test
+    void nullValuesBindAsNull() {
+        ScriptTemplate template = new ScriptBuilder().var("a", ScriptTemplate.slot("x")).template();
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("x", null);
+
+        assertTrue(template.bind(values).getJsonBlueprint().contains("\"a\":null"));
+    }
+
+    @Test
+    void stringsAroundSlotsAreCopiedAsTheyAre() {
+        String tricky = "quote \" backslash \\ nul \u0000 brace } \\u0000locrowai";
+        ScriptTemplate template = new ScriptBuilder()
+                .var("tricky", tricky)
+                .var("a", ScriptTemplate.slot("x"))
+                .template();
+
+        assertEquals(new ScriptBuilder().var("tricky", tricky).var("a", 1).build().getJsonBlueprint(),
+                template.bind(Map.of("x", 1)).getJsonBlueprint());
+    }
+
+    @Test
+    void bindRejectsMissingAndUnknownValues() {
+        ScriptTemplate template = new ScriptBuilder().var("a", ScriptTemplate.slot("x")).template();
+
+        assertThrows(IllegalArgumentException.class, () -> template.bind(Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> template.bind(Map.of("x", 1, "y", 2)));
+    }
+
+    @Test
+    void slotInsideAStringIsRejected() {
+        assertThrows(InvalidScriptException.class,
+                () -> new ScriptBuilder().var("a", "before " + ScriptTemplate.slot("x")).template());
+        assertThrows(InvalidScriptException.class,
+                () -> new ScriptBuilder().var("a", ScriptTemplate.slot("x") + " after").template());
+        assertThrows(InvalidScriptException.class,
+                () -> new ScriptBuilder().var("a", ScriptTemplate.slot("x") + ScriptTemplate.slot("y")).template());
+    }
+
+    @Test
+    void slotAsAnObjectKeyIsRejected() {
+        assertThrows(InvalidScriptException.class,
+                () -> new ScriptBuilder().var(ScriptTemplate.slot("x"), 1).template());
+        assertThrows(InvalidScriptException.class,
+                () -> new ScriptBuilder().var("a", Map.of(ScriptTemplate.slot("x"), 1)).template());
+    }
+
+    @Test
+    void slotNamesCannotContainNul() {
+        assertThrows(IllegalArgumentException.class, () -> ScriptTemplate.slot("a\u0000b"));
+    }
+}
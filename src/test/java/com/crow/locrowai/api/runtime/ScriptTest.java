@@ -0,0 +1,82 @@
+package com.crow.locrowai.api.runtime;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptTest {
+
+    private static JsonObject vars(Script script) {
+        return JsonParser.parseString(script.getJsonBlueprint()).getAsJsonObject().getAsJsonObject("vars");
+    }
+
+    @Test
+    void withVarsAddsAndReplacesVars() {
+        Script script = new ScriptBuilder().var("kept", 1).var("replaced", 2).build();
+
+        JsonObject added = new JsonObject();
+        added.addProperty("replaced", 3);
+        added.addProperty("added", "new");
+        JsonObject merged = vars(script.withVars(added));
+
+        assertEquals(1, merged.get("kept").getAsInt());
+        assertEquals(3, merged.get("replaced").getAsInt());
+        assertEquals("new", merged.get("added").getAsString());
+        // The original is left as it was.
+        assertEquals(2, vars(script).get("replaced").getAsInt());
+    }
+
+    @Test
+    void withVarsAddsVarsToScriptsWithoutAny() {
+        JsonObject added = new JsonObject();
+        added.addProperty("x", 1);
+
+        assertEquals(added, vars(new Script(null, "{\"script\":[]}").withVars(added)));
+    }
+
+    @Test
+    void withVarsKeepsEverythingElse() {
+        Script script = new ScriptBuilder()
+                .priority(Script.Priority.BACKGROUND)
+                .cacheable(Duration.ofMinutes(1))
+                .deadline(Duration.ofSeconds(5))
+                .input("pcm", ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .build();
+
+        Script copy = script.withVars(new JsonObject());
+
+        assertEquals(script.getPriority(), copy.getPriority());
+        assertEquals(script.getCacheTtl(), copy.getCacheTtl());
+        assertEquals(script.getDeadline(), copy.getDeadline());
+        assertEquals(script.getInputs(), copy.getInputs());
+        assertEquals(script.getCallIDs(), copy.getCallIDs());
+    }
+
+    @Test
+    void differentVarsHashDifferently() {
+        Script script = new ScriptBuilder().build();
+        JsonObject one = new JsonObject();
+        one.addProperty("x", 1);
+        JsonObject two = new JsonObject();
+        two.addProperty("x", 2);
+
+        assertNotEquals(script.withVars(one).getBlueprintHash(), script.withVars(two).getBlueprintHash());
+        assertEquals(script.withVars(one).getBlueprintHash(), script.withVars(one).getBlueprintHash());
+    }
+
+    @Test
+    void jsonBytesAreTheBlueprintAndReadOnly() {
+        Script script = new ScriptBuilder().var("text", "\u00e9").build();
+        ByteBuffer bytes = script.getJsonBytes();
+
+        assertEquals(script.getJsonBlueprint(), StandardCharsets.UTF_8.decode(bytes.duplicate()).toString());
+        assertThrows(ReadOnlyBufferException.class, () -> bytes.put(0, (byte) 0));
+    }
+}
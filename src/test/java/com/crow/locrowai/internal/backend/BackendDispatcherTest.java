@@ -0,0 +1,179 @@
+package com.crow.locrowai.internal.backend;
+
+import com.crow.locrowai.api.runtime.Script;
+import com.crow.locrowai.api.runtime.exceptions.AIBackendBusyException;
+import com.crow.locrowai.internal.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackendDispatcherTest {
+
+    // Tasks that have been started, in order, each with the future that finishes it.
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, CompletableFuture<String>> running = Collections.synchronizedMap(new HashMap<>());
+    private final List<CompletableFuture<String>> submitted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Config.backendMaxConcurrent = 1;
+        Config.backendMaxQueued = 64;
+        Config.backendModWeights = Map.of();
+        Config.backendModMaxConcurrent = Map.of();
+        BackendHealth.recover(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Leaves the dispatcher empty for the next test.
+        Config.backendMaxConcurrent = 1024;
+        submitted.forEach(future -> future.cancel(true));
+        new ArrayList<>(running.values()).forEach(future -> future.complete("done"));
+        await(() -> BackendDispatcher.getRunning() == 0);
+        BackendHealth.stop();
+    }
+
+    private CompletableFuture<String> submit(String modID, Script.Priority priority, String name) {
+        CompletableFuture<String> future = BackendDispatcher.submit(modID, priority, () -> {
+            CompletableFuture<String> task = new CompletableFuture<>();
+            running.put(name, task);
+            started.add(name);
+            return task;
+        });
+        submitted.add(future);
+        return future;
+    }
+
+    private void finish(String name) {
+        await(() -> running.containsKey(name));
+        running.remove(name).complete(name);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("Timed out waiting for the dispatcher.");
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void runsAtMostTheConfiguredNumberAtOnce() throws Exception {
+        Config.backendMaxConcurrent = 2;
+        CompletableFuture<String> first = submit("global", Script.Priority.INTERACTIVE, "a");
+        submit("global", Script.Priority.INTERACTIVE, "b");
+        submit("global", Script.Priority.INTERACTIVE, "c");
+
+        assertEquals(List.of("a", "b"), started);
+        assertEquals(2, BackendDispatcher.getRunning());
+        assertEquals(1, BackendDispatcher.getQueued("global"));
+
+        finish("a");
+        assertEquals("a", first.get());
+        await(() -> started.contains("c"));
+        assertEquals(2, BackendDispatcher.getRunning());
+        assertEquals(0, BackendDispatcher.getQueued("global"));
+    }
+
+    @Test
+    void perModCapsLeaveSlotsForOthers() {
+        Config.backendMaxConcurrent = 4;
+        Config.backendModMaxConcurrent = Map.of("capped", 1);
+
+        submit("capped", Script.Priority.BACKGROUND, "capped-1");
+        submit("capped", Script.Priority.BACKGROUND, "capped-2");
+        submit("other", Script.Priority.BACKGROUND, "other-1");
+
+        assertEquals(List.of("capped-1", "other-1"), started);
+        assertEquals(1, BackendDispatcher.getRunning("capped"));
+        assertEquals(1, BackendDispatcher.getQueued("capped"));
+
+        finish("capped-1");
+        await(() -> started.contains("capped-2"));
+        assertEquals(1, BackendDispatcher.getRunning("capped"));
+    }
+
+    @Test
+    void interactiveWorkStartsBeforeBackgroundWork() {
+        submit("lanes", Script.Priority.BACKGROUND, "blocker");
+        submit("lanes", Script.Priority.BACKGROUND, "background");
+        submit("lanes", Script.Priority.INTERACTIVE, "interactive");
+
+        finish("blocker");
+        await(() -> started.size() == 2);
+        assertEquals("interactive", started.get(1));
+
+        finish("interactive");
+        await(() -> started.size() == 3);
+        assertEquals("background", started.get(2));
+    }
+
+    @Test
+    void modsTakeTurnsByWeight() {
+        Config.backendModWeights = Map.of("heavy", 2, "light", 1);
+
+        submit("blocker", Script.Priority.BACKGROUND, "blocker");
+        for (int i = 0; i < 12; i++) {
+            submit("heavy", Script.Priority.BACKGROUND, "heavy-" + i);
+            submit("light", Script.Priority.BACKGROUND, "light-" + i);
+        }
+
+        String last = "blocker";
+        for (int i = 0; i < 9; i++) {
+            finish(last);
+            int next = i + 2;
+            await(() -> started.size() == next);
+            last = started.get(next - 1);
+        }
+
+        long heavy = started.stream().filter(name -> name.startsWith("heavy")).count();
+        long light = started.stream().filter(name -> name.startsWith("light")).count();
+        assertEquals(9, heavy + light);
+        assertTrue(Math.abs(heavy - 2 * light) <= 1, heavy + " heavy and " + light + " light scripts started");
+    }
+
+    @Test
+    void fullQueuesRejectNewScripts() {
+        Config.backendMaxQueued = 1;
+
+        submit("busy", Script.Priority.INTERACTIVE, "running");
+        submit("busy", Script.Priority.INTERACTIVE, "queued");
+        CompletableFuture<String> rejected = submit("busy", Script.Priority.INTERACTIVE, "rejected");
+
+        ExecutionException err = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(err.getCause() instanceof AIBackendBusyException);
+        // The other lane has a queue of its own.
+        submit("busy", Script.Priority.BACKGROUND, "background");
+        assertEquals(2, BackendDispatcher.getQueued("busy"));
+    }
+
+    @Test
+    void cancelledScriptsLeaveTheQueue() {
+        submit("cancel", Script.Priority.INTERACTIVE, "running");
+        CompletableFuture<String> queued = submit("cancel", Script.Priority.INTERACTIVE, "queued");
+
+        queued.cancel(true);
+        assertEquals(0, BackendDispatcher.getQueued("cancel"));
+
+        finish("running");
+        await(() -> BackendDispatcher.getRunning() == 0);
+        assertEquals(List.of("running"), started);
+    }
+
+    @Test
+    void scriptsFailStraightAwayWhileTheBackendIsDown() {
+        BackendHealth.stop();
+
+        CompletableFuture<String> future = submit("down", Script.Priority.INTERACTIVE, "never");
+
+        assertTrue(future.isCompletedExceptionally());
+        assertTrue(started.isEmpty());
+    }
+}
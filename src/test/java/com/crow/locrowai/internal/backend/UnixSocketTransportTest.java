@@ -0,0 +1,196 @@
+package com.crow.locrowai.internal.backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnixSocketTransportTest {
+
+    private Path directory;
+    private Path socket;
+    private ServerSocketChannel server;
+    // The request as the server received it.
+    private final CompletableFuture<String> received = new CompletableFuture<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("locrowai-socket");
+        socket = directory.resolve("backend.sock");
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        Files.deleteIfExists(socket);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Answers the next request with {@code response} as it is, then closes the connection. A null response is never
+     * sent, and the connection is left open until the client closes it.
+     */
+    private void respond(String response) {
+        new Thread(() -> {
+            try (SocketChannel client = server.accept()) {
+                InputStream in = Channels.newInputStream(client);
+                ByteArrayOutputStream request = new ByteArrayOutputStream();
+                while (!request.toString(StandardCharsets.ISO_8859_1).contains("\r\n\r\n"))
+                    request.write(in.read());
+
+                String head = request.toString(StandardCharsets.ISO_8859_1);
+                int length = head.lines()
+                        .filter(line -> line.toLowerCase(Locale.ROOT).startsWith("content-length:"))
+                        .mapToInt(line -> Integer.parseInt(line.substring(line.indexOf(':') + 1).trim()))
+                        .findFirst().orElse(0);
+                received.complete(head + new String(in.readNBytes(length), StandardCharsets.UTF_8));
+
+                if (response == null) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                    return;
+                }
+
+                OutputStream out = Channels.newOutputStream(client);
+                out.write(response.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                received.completeExceptionally(e);
+            }
+        }).start();
+    }
+
+    private <T> HttpResponse<T> post(String body, HttpResponse.BodyHandler<T> handler) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost/run"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return UnixSocketTransport.sendAsync(socket, request, handler, ForkJoinPool.commonPool()).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void sendsTheRequestLineHeadersAndBody() throws Exception {
+        respond("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\n{}");
+
+        post("{\"script\":[]}", HttpResponse.BodyHandlers.discarding());
+
+        String request = received.get(5, TimeUnit.SECONDS);
+        assertTrue(request.startsWith("POST /run HTTP/1.1\r\n"));
+        assertTrue(request.contains("Content-Length: 13\r\n"));
+        assertTrue(request.toLowerCase(Locale.ROOT).contains("content-type: application/json\r\n"));
+        assertTrue(request.endsWith("\r\n\r\n{\"script\":[]}"));
+    }
+
+    @Test
+    void readsContentLengthBodies() throws Exception {
+        // The length counts bytes, and the body is not ASCII.
+        respond("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 12\r\n\r\n{\"out\":\"\u00e9\"}");
+
+        HttpResponse<String> response = post("{}", HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"out\":\"\u00e9\"}", response.body());
+        assertEquals("application/json", response.headers().firstValue("content-type").orElse(null));
+    }
+
+    @Test
+    void decodesChunkedBodies() throws Exception {
+        respond("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "7\r\n{\"out\":\r\n"
+                + "A;name=value\r\n\"chunked\"}\r\n"
+                + "0\r\nX-Trailer: ignored\r\n\r\n");
+
+        HttpResponse<String> response = post("{}", HttpResponse.BodyHandlers.ofString());
+
+        assertEquals("{\"out\":\"chunked\"}", response.body());
+    }
+
+    @Test
+    void decodesChunkedBodiesLineByLine() throws Exception {
+        respond("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "c\r\n{\"event\":1}\n\r\n"
+                + "18\r\n{\"event\":2}\n{\"event\":3}\n\r\n"
+                + "0\r\n\r\n");
+
+        HttpResponse<Stream<String>> response = post("{}", HttpResponse.BodyHandlers.ofLines());
+
+        List<String> lines = response.body().collect(Collectors.toList());
+        assertEquals(List.of("{\"event\":1}", "{\"event\":2}", "{\"event\":3}"), lines);
+    }
+
+    @Test
+    void readsBodiesThatEndWithTheConnection() throws Exception {
+        respond("HTTP/1.1 500 Internal Server Error\r\n\r\nfailed");
+
+        HttpResponse<String> response = post("{}", HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(500, response.statusCode());
+        assertEquals("failed", response.body());
+    }
+
+    @Test
+    void truncatedChunkedBodiesFail() {
+        respond("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "10\r\nonly part");
+
+        ExecutionException err = assertThrows(ExecutionException.class,
+                () -> post("{}", HttpResponse.BodyHandlers.ofString()));
+        assertTrue(err.getCause() instanceof IOException);
+    }
+
+    @Test
+    void requestsThatOutliveTheirTimeoutFail() {
+        // Accepts the connection but never answers.
+        respond(null);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost/run"))
+                .timeout(Duration.ofMillis(50))
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+
+        ExecutionException err = assertThrows(ExecutionException.class, () -> UnixSocketTransport
+                .sendAsync(socket, request, HttpResponse.BodyHandlers.ofString(), ForkJoinPool.commonPool())
+                .get(5, TimeUnit.SECONDS));
+        assertTrue(err.getCause() instanceof HttpTimeoutException);
+    }
+
+    @Test
+    void missingSocketsFail() throws IOException {
+        server.close();
+        Files.delete(socket);
+
+        ExecutionException err = assertThrows(ExecutionException.class,
+                () -> post("{}", HttpResponse.BodyHandlers.ofString()));
+        assertTrue(err.getCause() instanceof IOException);
+    }
+}
@@ -0,0 +1,117 @@
+package com.crow.locrowai.internal.commands;
+
+import com.crow.locrowai.api.AIContext;
+import com.crow.locrowai.api.runtime.Script;
+import com.crow.locrowai.api.runtime.exceptions.AIBackendBusyException;
+import com.crow.locrowai.api.runtime.exceptions.AIBackendException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BenchCommandTest {
+
+    /**
+     * Answers every script a millisecond later. Every third one fails with a backend error and every fifth with a
+     * full queue.
+     */
+    private static class StubContext extends AIContext {
+        private final Executor later = CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS);
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+        private final AtomicInteger maxInFlight = new AtomicInteger(0);
+        private final Set<Integer> runs = Collections.synchronizedSet(new HashSet<>());
+
+        StubContext() {
+            super("bench_test", StubContext.class.getClassLoader());
+        }
+
+        @Override
+        public CompletableFuture<JsonObject> execute(Script script) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            int run = JsonParser.parseString(script.getJsonBlueprint()).getAsJsonObject()
+                    .getAsJsonObject("vars").get("locrowai_bench_run").getAsInt();
+            runs.add(run);
+
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                if (run % 3 == 0) throw new AIBackendException("failed");
+                if (run % 5 == 0) throw new AIBackendBusyException("interactive");
+                return new JsonObject();
+            }, later);
+        }
+    }
+
+    private final StubContext context = new StubContext();
+    private final List<String> output = Collections.synchronizedList(new ArrayList<>());
+    private final CompletableFuture<Void> reported = new CompletableFuture<>();
+
+    private void run(String blueprint, int concurrency, int count) throws Exception {
+        new BenchCommand.Run(message -> {
+            output.add(message);
+            if (message.contains("errors")) reported.complete(null);
+        }, context, JsonParser.parseString(blueprint).getAsJsonObject(), concurrency, count).start();
+
+        reported.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void runsEveryScriptOnceWithinTheConcurrency() throws Exception {
+        run("{\"script\":[]}", 4, 100);
+
+        assertEquals(100, context.runs.size());
+        assertTrue(context.maxInFlight.get() <= 4, context.maxInFlight.get() + " scripts were in flight");
+        assertEquals(0, context.inFlight.get());
+    }
+
+    @Test
+    void keepsTheScriptsOwnVars() throws Exception {
+        List<JsonObject> vars = Collections.synchronizedList(new ArrayList<>());
+        AIContext recording = new StubContext() {
+            @Override
+            public CompletableFuture<JsonObject> execute(Script script) {
+                vars.add(JsonParser.parseString(script.getJsonBlueprint()).getAsJsonObject().getAsJsonObject("vars"));
+                return CompletableFuture.completedFuture(new JsonObject());
+            }
+        };
+
+        new BenchCommand.Run(message -> {
+            if (message.contains("errors")) reported.complete(null);
+        }, recording, JsonParser.parseString("{\"vars\":{\"text\":\"hi\"}}").getAsJsonObject(), 2, 3).start();
+        reported.get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, vars.size());
+        vars.forEach(v -> assertEquals("hi", v.get("text").getAsString()));
+    }
+
+    @Test
+    void reportsTheCountAndTalliesErrorsByType() throws Exception {
+        run("{\"script\":[]}", 8, 30);
+
+        // Runs 0, 3, ..., 27 fail with a backend error, and 5, 10, 20 and 25 with a full queue.
+        String summary = output.stream().filter(line -> line.contains("errors")).findFirst().orElseThrow();
+        assertTrue(summary.startsWith("30 scripts in "), summary);
+        assertTrue(summary.contains("p50 ") && summary.contains("p99 "), summary);
+        assertTrue(summary.endsWith("| 14 errors"), summary);
+
+        // The breakdown follows the summary, one line per type.
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (output.size() < 4 && System.nanoTime() < deadline) Thread.onSpinWait();
+        assertTrue(output.contains("  AIBackendException: 10"), output.toString());
+        assertTrue(output.contains("  AIBackendBusyException: 4"), output.toString());
+    }
+
+    @Test
+    void neverLaunchesMoreThanTheCount() throws Exception {
+        run("{\"script\":[]}", 16, 3);
+
+        assertEquals(Set.of(0, 1, 2), context.runs);
+        assertTrue(output.stream().anyMatch(line -> line.startsWith("3 scripts in ")), output.toString());
+    }
+}
@@ -0,0 +1,53 @@
+package com.crow.locrowai.internal.runtime;
+
+import com.crow.locrowai.api.runtime.exceptions.ScriptTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationTest {
+
+    @Test
+    void expiredFuturesFailWithATimeoutAndStopTheWork() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+        Cancellation.onTimeout(future, Duration.ofMillis(10), () -> stopped.complete(null));
+
+        ExecutionException err = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(err.getCause() instanceof ScriptTimeoutException);
+        stopped.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void completedFuturesDropTheirTimer() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        AtomicBoolean stopped = new AtomicBoolean(false);
+
+        Cancellation.onTimeout(future, Duration.ofMinutes(5), () -> stopped.set(true));
+        assertFalse(Cancellation.timer.getQueue().isEmpty());
+
+        future.complete("done");
+
+        // Nothing is left holding the future until the deadline.
+        assertTrue(Cancellation.timer.getQueue().isEmpty());
+        assertFalse(stopped.get());
+        assertEquals("done", future.get());
+    }
+
+    @Test
+    void nullDeadlinesNeverExpire() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+
+        Cancellation.onTimeout(future, null, () -> fail("a null deadline expired"));
+
+        assertTrue(Cancellation.timer.getQueue().isEmpty());
+        assertFalse(future.isDone());
+    }
+}
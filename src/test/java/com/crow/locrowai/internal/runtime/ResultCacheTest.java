@@ -0,0 +1,132 @@
+package com.crow.locrowai.internal.runtime;
+
+import com.crow.locrowai.internal.Config;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    private final ResultCache cache = new ResultCache();
+
+    @BeforeEach
+    void setUp() {
+        Config.resultCacheBytes = 1024;
+    }
+
+    private static JsonObject results(String value) {
+        JsonObject results = new JsonObject();
+        results.addProperty("out", value);
+        return results;
+    }
+
+    @Test
+    void returnsWhatWasPut() {
+        cache.put("a", results("hello"), 15, TTL);
+
+        assertEquals(results("hello"), cache.get("a"));
+        assertNull(cache.get("b"));
+
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void callersGetTheirOwnCopies() {
+        JsonObject stored = results("hello");
+        cache.put("a", stored, 15, TTL);
+        stored.addProperty("out", "changed after put");
+
+        cache.get("a").addProperty("out", "changed after get");
+
+        assertEquals(results("hello"), cache.get("a"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedPastTheBudget() {
+        Config.resultCacheBytes = 300;
+
+        cache.put("a", results("a"), 100, TTL);
+        cache.put("b", results("b"), 100, TTL);
+        cache.put("c", results("c"), 100, TTL);
+        // Reading a makes b the least recently used.
+        assertNotNull(cache.get("a"));
+
+        cache.put("d", results("d"), 100, TTL);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.evictions());
+        assertEquals(300, stats.bytes());
+    }
+
+    @Test
+    void replacingAnEntryDoesNotCountItTwice() {
+        cache.put("a", results("a"), 100, TTL);
+        cache.put("a", results("a"), 200, TTL);
+
+        assertEquals(1, cache.getStats().entries());
+        assertEquals(200, cache.getStats().bytes());
+    }
+
+    @Test
+    void resultsLargerThanTheBudgetAreNotCached() {
+        Config.resultCacheBytes = 50;
+
+        cache.put("a", results("a"), 100, TTL);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getStats().bytes());
+    }
+
+    @Test
+    void expiredEntriesAreMisses() throws InterruptedException {
+        cache.put("a", results("hello"), 15, Duration.ofMillis(1));
+        Thread.sleep(5);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getStats().entries());
+        assertEquals(0, cache.getStats().bytes());
+    }
+
+    @Test
+    void nonPositiveTtlsAreNotCached() {
+        cache.put("a", results("hello"), 15, Duration.ZERO);
+        cache.put("b", results("hello"), 15, Duration.ofSeconds(-1));
+
+        assertEquals(0, cache.getStats().entries());
+    }
+
+    @Test
+    void entriesAreSizedByWhatTheBackendSent() {
+        cache.put("a", results("\u00e9".repeat(10)), 30, TTL);
+
+        assertEquals(30, cache.getStats().bytes());
+    }
+
+    @Test
+    void clearEmptiesTheCacheAndResetsTheStats() {
+        Config.resultCacheBytes = 20;
+        cache.put("a", results("hello"), 15, TTL);
+        cache.put("b", results("hello"), 15, TTL);
+        cache.get("b");
+        cache.get("c");
+
+        cache.clear();
+
+        assertEquals(new ResultCache.Stats(0, 0, 0, 0, 0), cache.getStats());
+        assertNull(cache.get("b"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.crow.locrowai.internal.runtime;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<JsonObject> flights = new SingleFlight<>(JsonObject::deepCopy);
+    private final AtomicInteger executions = new AtomicInteger(0);
+    private final CompletableFuture<JsonObject> task = new CompletableFuture<>();
+
+    private CompletableFuture<JsonObject> execute(String key) {
+        return flights.execute(key, () -> {
+            executions.incrementAndGet();
+            return task;
+        });
+    }
+
+    private static JsonObject results() {
+        JsonObject results = new JsonObject();
+        results.addProperty("out", 1);
+        return results;
+    }
+
+    @Test
+    void identicalKeysShareOneExecution() throws Exception {
+        CompletableFuture<JsonObject> first = execute("a");
+        CompletableFuture<JsonObject> second = execute("a");
+
+        assertEquals(1, executions.get());
+        assertEquals(1, flights.size());
+
+        task.complete(results());
+
+        assertEquals(results(), first.get());
+        assertEquals(results(), second.get());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    void sharedResultsAreCopiedForEachWaiter() throws Exception {
+        CompletableFuture<JsonObject> first = execute("a");
+        CompletableFuture<JsonObject> second = execute("a");
+        task.complete(results());
+
+        first.get().addProperty("out", 2);
+
+        assertNotSame(first.get(), second.get());
+        assertEquals(results(), second.get());
+    }
+
+    @Test
+    void aSingleWaiterGetsTheResultAsItIs() throws Exception {
+        CompletableFuture<JsonObject> only = execute("a");
+        JsonObject results = results();
+        task.complete(results);
+
+        assertSame(results, only.get());
+    }
+
+    @Test
+    void differentKeysRunSeparately() {
+        execute("a");
+        execute("b");
+
+        assertEquals(2, executions.get());
+        assertEquals(2, flights.size());
+    }
+
+    @Test
+    void finishedFlightsAreNotReused() {
+        execute("a");
+        task.complete(results());
+        execute("a");
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void failuresReachEveryWaiter() {
+        CompletableFuture<JsonObject> first = execute("a");
+        CompletableFuture<JsonObject> second = execute("a");
+
+        task.completeExceptionally(new IllegalStateException("backend failed"));
+
+        assertTrue(assertThrows(ExecutionException.class, first::get).getCause() instanceof IllegalStateException);
+        assertTrue(assertThrows(ExecutionException.class, second::get).getCause() instanceof IllegalStateException);
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    void tasksThatThrowFailTheFlight() {
+        CompletableFuture<JsonObject> future = flights.execute("a", () -> {
+            throw new IllegalStateException("could not start");
+        });
+
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    void theExecutionIsOnlyCancelledOnceEveryWaiterHasGivenUp() throws Exception {
+        CompletableFuture<JsonObject> first = execute("a");
+        CompletableFuture<JsonObject> second = execute("a");
+
+        first.cancel(true);
+        assertFalse(task.isCancelled());
+
+        second.cancel(true);
+        assertTrue(task.isCancelled());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    void waitersThatStayGetTheResultAfterOthersCancel() throws Exception {
+        CompletableFuture<JsonObject> first = execute("a");
+        CompletableFuture<JsonObject> second = execute("a");
+
+        first.cancel(true);
+        task.complete(results());
+
+        assertEquals(results(), second.get());
+    }
+
+    @Test
+    void callersJoiningAsTheLastWaiterLeavesAreNotCancelled() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            SingleFlight<JsonObject> flights = new SingleFlight<>(JsonObject::deepCopy);
+            CompletableFuture<JsonObject> leaving = flights.execute("a", CompletableFuture::new);
+
+            CompletableFuture<CompletableFuture<JsonObject>> joining = CompletableFuture.supplyAsync(
+                    () -> flights.execute("a", CompletableFuture::new));
+            leaving.cancel(true);
+
+            assertFalse(joining.get().isCancelled(), "a caller that joined at iteration " + i + " was cancelled");
+        }
+    }
+
+    @Test
+    void abandonedFlightsAreNotJoined() {
+        CompletableFuture<JsonObject> first = flights.execute("a", CompletableFuture::new);
+        first.cancel(true);
+
+        CompletableFuture<JsonObject> second = flights.execute("a", CompletableFuture::new);
+
+        assertFalse(second.isDone());
+        assertEquals(1, flights.size());
+    }
+}